@@ -0,0 +1,41 @@
+package cormack.benchmarks;
+
+import cormack.CormackHashing;
+import cormack.DuplicateValueException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk build of a table, one operation builds the table from all keys of the key set.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuildBenchmark {
+    @Param({"1", "4"})
+    public int parallelism;
+
+    /**
+     * Builds the table from all keys at once.
+     */
+    @Benchmark
+    public CormackHashing build(KeySet keySet) throws DuplicateValueException {
+        return new CormackHashing.Builder()
+                .directorySize(keySet.directorySize)
+                .parallelism(parallelism)
+                .build(keySet.keys);
+    }
+}
@@ -0,0 +1,73 @@
+package cormack.benchmarks;
+
+import cormack.ConcurrentCormackHashing;
+import cormack.DuplicateValueException;
+import cormack.PrimaryHashFamily;
+import cormack.SecondaryHashFamily;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Inserts into one shared table from several threads, every thread inserts its own keys. Run with
+ * {@code -t 1}, {@code -t 4} and {@code -t 16}; one stripe is a single global lock.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentInsertBenchmark {
+    /** the keys of 16 threads never meet */
+    private static final int MAX_THREADS = 16;
+
+    @State(Scope.Benchmark)
+    public static class Table {
+        @Param({"1", "1024"})
+        public int stripes;
+
+        public ConcurrentCormackHashing table;
+        final AtomicInteger threads = new AtomicInteger();
+
+        /**
+         * A new table for every iteration, so buckets stay small.
+         */
+        @Setup(Level.Iteration)
+        public void setUp() {
+            table = new ConcurrentCormackHashing(1 << 20, PrimaryHashFamily.mixing(42), SecondaryHashFamily.shift(), stripes);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Keys {
+        int thread;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(Table table) {
+            thread = table.threads.getAndIncrement() % MAX_THREADS;
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            next = 0;
+        }
+    }
+
+    @Benchmark
+    public void insert(Table table, Keys keys) throws DuplicateValueException {
+        table.table.insert(keys.next++ * MAX_THREADS + keys.thread);
+    }
+}
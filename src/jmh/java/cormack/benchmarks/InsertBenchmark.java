@@ -0,0 +1,41 @@
+package cormack.benchmarks;
+
+import cormack.CormackHashing;
+import cormack.DuplicateValueException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filling an empty table by inserting keys one by one, one operation stores all keys of the key set.
+ * SAME_RESIDUE keys all go to one bucket and every insert reorders it, so at most SAME_RESIDUE_KEYS of
+ * them are inserted, a score of a larger key count is the score of SAME_RESIDUE_KEYS keys.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InsertBenchmark {
+    private static final int SAME_RESIDUE_KEYS = 1000;
+
+    /**
+     * Inserts the keys one by one, each collision reorders the whole bucket.
+     */
+    @Benchmark
+    public CormackHashing insertStream(KeySet keySet) throws DuplicateValueException {
+        int count = keySet.distribution == KeyDistribution.SAME_RESIDUE
+                ? Math.min(keySet.keys.length, SAME_RESIDUE_KEYS) : keySet.keys.length;
+        CormackHashing cormackHashing = new CormackHashing(keySet.directorySize);
+        for (int k = 0; k < count; k++) {
+            cormackHashing.insert(keySet.keys[k]);
+        }
+        return cormackHashing;
+    }
+}
@@ -0,0 +1,44 @@
+package cormack.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Distributions of the keys used by the benchmarks.
+ */
+public enum KeyDistribution {
+    /** distinct random keys */
+    UNIFORM,
+    /** keys 0, 1, 2, ... */
+    SEQUENTIAL,
+    /** keys with the same residue modulo the directory size, they all end up in one bucket with k mod s */
+    SAME_RESIDUE;
+
+    /**
+     * Generates distinct keys, keys[0..count) are inserted and keys[count..2 * count) are never inserted.
+     *
+     * @param count Number of inserted keys.
+     * @param directorySize Size of the directory the keys are inserted to.
+     * @param seed Seed of the random keys.
+     * @return Array of 2 * count distinct keys.
+     */
+    int[] keys(int count, int directorySize, long seed) {
+        switch (this) {
+            case UNIFORM:
+                return new Random(seed).ints(0, Integer.MAX_VALUE).distinct().limit(2L * count).toArray();
+            case SEQUENTIAL: {
+                int[] keys = new int[2 * count];
+                for (int k = 0; k < keys.length; k++) {
+                    keys[k] = k;
+                }
+                return keys;
+            }
+            default: {
+                int[] keys = new int[2 * count];
+                for (int k = 0; k < keys.length; k++) {
+                    keys[k] = k * directorySize + 3;
+                }
+                return keys;
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package cormack.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+
+/**
+ * Keys shared by the benchmarks, parameterised by key count, directory size and distribution.
+ */
+@State(Scope.Benchmark)
+public class KeySet {
+    @Param({"1000", "10000"})
+    public int keyCount;
+
+    @Param({"128", "2048"})
+    public int directorySize;
+
+    @Param({"UNIFORM", "SEQUENTIAL", "SAME_RESIDUE"})
+    public KeyDistribution distribution;
+
+    /** keys to insert */
+    public int[] keys;
+    /** keys which are never inserted */
+    public int[] missingKeys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[] all = distribution.keys(keyCount, directorySize, 42);
+        keys = Arrays.copyOf(all, keyCount);
+        missingKeys = Arrays.copyOfRange(all, keyCount, all.length);
+    }
+}
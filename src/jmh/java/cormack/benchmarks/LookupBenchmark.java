@@ -0,0 +1,71 @@
+package cormack.benchmarks;
+
+import cormack.CormackHashing;
+import cormack.DuplicateValueException;
+import cormack.FrozenCormackHashing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups of stored (hit) and not stored (miss) keys in the table and in its frozen copy,
+ * one operation is one lookup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LookupBenchmark {
+    private CormackHashing cormackHashing;
+    private FrozenCormackHashing frozen;
+    private int[] keys;
+    private int[] missingKeys;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp(KeySet keySet) throws DuplicateValueException {
+        cormackHashing = new CormackHashing.Builder().directorySize(keySet.directorySize).build(keySet.keys);
+        frozen = cormackHashing.freeze();
+        keys = keySet.keys;
+        missingKeys = keySet.missingKeys;
+    }
+
+    private int nextIndex() {
+        if (++index == keys.length) {
+            index = 0;
+        }
+        return index;
+    }
+
+    @Benchmark
+    public boolean hit() {
+        return cormackHashing.contains(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean miss() {
+        return cormackHashing.contains(missingKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean frozenHit() {
+        return frozen.contains(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean frozenMiss() {
+        return frozen.contains(missingKeys[nextIndex()]);
+    }
+}
@@ -0,0 +1,56 @@
+package cormack.benchmarks;
+
+import cormack.CormackHashing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search of i and r for the values of one bucket, as done when the bucket is reordered.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SecondarySearchBenchmark {
+    @Param({"8", "64", "256"})
+    public int bucketSize;
+
+    @Param({"UNIFORM", "SEQUENTIAL", "SAME_RESIDUE"})
+    public KeyDistribution distribution;
+
+    private final CormackHashing cormackHashing = new CormackHashing();
+    private int[] values;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        values = distribution.keys(bucketSize, 1024, 42);
+    }
+
+    /**
+     * Tries r from the number of values upwards until hashValuesAreNotCollidingForR finds i.
+     *
+     * @return Found r.
+     */
+    @Benchmark
+    public int searchIAndR() {
+        int r = bucketSize;
+        while (cormackHashing.hashValuesAreNotCollidingForR(r, values, bucketSize) < 0) {
+            r++;
+        }
+        return r;
+    }
+}
@@ -0,0 +1,76 @@
+package cormack;
+
+import java.util.Arrays;
+
+/**
+ * Primary file as a growable array of values, the key of a record is its position in the array.
+ */
+final class ArrayPrimaryFile implements PrimaryFile {
+    private int[] values = new int[16];
+    private int size;
+
+    @Override
+    public int get(int position) {
+        return values[position];
+    }
+
+    @Override
+    public void set(int position, int value) {
+        values[position] = value;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Reading an array changes nothing, so threads can read it at once.
+     */
+    @Override
+    public boolean supportsConcurrentReads() {
+        return true;
+    }
+
+    @Override
+    public int capacity() {
+        return values.length;
+    }
+
+    /**
+     * Buckets in memory can start anywhere.
+     */
+    @Override
+    public int alignedStart(int position, int count) {
+        return position;
+    }
+
+    /**
+     * Appends empty slots to the end of the primary file, grows the array by half when full.
+     */
+    @Override
+    public int append(int count) {
+        int first = size;
+        if (size + count > values.length) {
+            values = Arrays.copyOf(values, Math.max(size + count, values.length + (values.length >> 1)));
+        }
+        Arrays.fill(values, first, first + count, EMPTY);
+        size += count;
+        return first;
+    }
+
+    @Override
+    public void truncate(int newSize) {
+        size = newSize;
+    }
+
+    /**
+     * Releases the capacity of the array if it is more than twice the size.
+     */
+    @Override
+    public void trim() {
+        if (values.length > 2 * size && values.length > 16) {
+            values = Arrays.copyOf(values, Math.max(16, size));
+        }
+    }
+}
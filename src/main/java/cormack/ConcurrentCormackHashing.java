@@ -0,0 +1,347 @@
+package cormack;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe variant of CormackHashing for many readers and occasional inserts. Lookups take no lock
+ * and never wait for an insert.
+ * <p>
+ * A reordered bucket is never changed in place. Insert writes the bucket with the new value to new slots
+ * at the end of the primary file and then publishes i, r and p of the bucket by one atomic write of its
+ * directory record, packed into a long. A lookup reads the record once, so it sees either the old or the
+ * new bucket, both complete. The slots of the old bucket keep their values for lookups still reading them.
+ * When more than half of the primary file is such dead slots, the inserting thread compacts the table:
+ * it takes all locks, copies the buckets one after another into a new primary file with a new directory
+ * and publishes both by one volatile write. Lookups running at that time keep reading the old pair, so
+ * old slots are never reused while a lookup may see them. The directory has a fixed size.
+ * <p>
+ * Inserts into different directory positions run in parallel. Every position is guarded by one of
+ * a fixed number of striped locks, and slots at the end of the primary file are reserved by an atomic
+ * add, so the only shared write is the reservation. One stripe gives a single global lock.
+ */
+public final class ConcurrentCormackHashing {
+    private static final int EMPTY = -1;
+
+    /** the primary file is a list of chunks of 2^16 slots, a grown list does not copy the chunks */
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /** a directory record is p in the upper 32 bits, r in the next 24 bits and i in the lowest 8 bits */
+    private static final int I_BITS = 8;
+    private static final int MAX_R = (1 << 24) - 1;
+
+    /** number of striped locks by default */
+    private static final int DEFAULT_STRIPES = 1024;
+    /** the table is compacted when this part of the primary file is dead, but not below one chunk */
+    private static final double COMPACTION_THRESHOLD = 0.5;
+
+    private final PrimaryHashFamily primaryHash;
+    private final SecondaryHashFamily secondaryHash;
+    /** directory and primary file, replaced as a whole by a compaction */
+    private volatile Table table;
+    private final LongAdder size = new LongAdder();
+
+    /** lock of a directory position is stripes[position % stripes.length] */
+    private final ReentrantLock[] stripes;
+    /** every inserting thread searches i and r with its own arrays */
+    private final ThreadLocal<SecondarySearch> search;
+    private final Object growLock = new Object();
+
+    /**
+     * Directory with its primary file. Lookups read the table once, so a record and the chunks it points
+     * into always come from the same table.
+     */
+    private static final class Table {
+        final AtomicLongArray directory;
+        /** chunks of the primary file, a new list is published before the records pointing into its new chunks */
+        volatile int[][] chunks;
+        /** end of the reserved part of the primary file, bumped by every insert */
+        final AtomicInteger primaryFileSize = new AtomicInteger();
+        /** slots of replaced buckets */
+        final AtomicInteger deadSlots = new AtomicInteger();
+
+        Table(int directorySize, int slots) {
+            directory = new AtomicLongArray(directorySize);
+            chunks = new int[Math.max(1, (int) (((long) slots + CHUNK_MASK) >>> CHUNK_SHIFT))][];
+            for (int k = 0; k < chunks.length; k++) {
+                chunks[k] = newChunk();
+            }
+        }
+    }
+
+    /**
+     * Creates empty ConcurrentCormackHashing with the hash functions from the lecture.
+     *
+     * @param directorySize Size of the directory.
+     */
+    public ConcurrentCormackHashing(int directorySize) {
+        this(directorySize, PrimaryHashFamily.modulo(), SecondaryHashFamily.shift(), DEFAULT_STRIPES);
+    }
+
+    /**
+     * Creates empty ConcurrentCormackHashing.
+     *
+     * @param directorySize Size of the directory.
+     * @param primaryHash Primary hash function.
+     * @param secondaryHash Family of secondary hash functions with at most 256 functions.
+     * @param stripes Number of locks guarding the directory positions, 1 makes all inserts sequential.
+     */
+    public ConcurrentCormackHashing(int directorySize, PrimaryHashFamily primaryHash, SecondaryHashFamily secondaryHash,
+                                    int stripes) {
+        if (directorySize <= 0) {
+            throw new IllegalArgumentException("Directory size must be positive.");
+        }
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Number of stripes must be positive.");
+        }
+        if (secondaryHash.functions() > 1 << I_BITS) {
+            throw new IllegalArgumentException("At most " + (1 << I_BITS) + " secondary functions are supported.");
+        }
+        this.primaryHash = primaryHash;
+        this.secondaryHash = secondaryHash;
+        this.table = new Table(directorySize, 0);
+        this.search = ThreadLocal.withInitial(() -> new SecondarySearch(secondaryHash));
+        this.stripes = new ReentrantLock[Math.min(stripes, directorySize)];
+        for (int k = 0; k < this.stripes.length; k++) {
+            this.stripes[k] = new ReentrantLock();
+        }
+    }
+
+    private static int[] newChunk() {
+        int[] chunk = new int[CHUNK_SIZE];
+        Arrays.fill(chunk, EMPTY);
+        return chunk;
+    }
+
+    private static int p(long record) {
+        return (int) (record >>> 32);
+    }
+
+    private static int r(long record) {
+        return (int) (record >>> I_BITS) & MAX_R;
+    }
+
+    private static int i(long record) {
+        return (int) record & ((1 << I_BITS) - 1);
+    }
+
+    /**
+     * Finds the position of a value in the primary file without locking.
+     *
+     * @param value Value to look for.
+     * @return Position (key) of the value in the primary file, -1 if the value is not stored.
+     */
+    public int get(int value) {
+        if (value == EMPTY) {
+            return -1;
+        }
+        Table table = this.table;
+        long record = table.directory.get(primaryHash.position(value, table.directory.length()));
+        return record == 0 ? -1 : probe(record, value, table.chunks);
+    }
+
+    /**
+     * Looks for a value in the bucket of a directory record. The chunks are read after the record,
+     * so they contain all slots of the bucket.
+     */
+    private int probe(long record, int value, int[][] chunks) {
+        int position = p(record) + secondaryHash.hash(value, i(record), r(record));
+        return chunks[position >>> CHUNK_SHIFT][position & CHUNK_MASK] == value ? position : -1;
+    }
+
+    /**
+     * Checks if a value is stored, without locking.
+     *
+     * @param value Value to look for.
+     * @return True if the value is stored, false otherwise.
+     */
+    public boolean contains(int value) {
+        return get(value) > -1;
+    }
+
+    /**
+     * Inserts a value. Lookups running at the same time see the value as soon as its bucket is published,
+     * inserts into positions guarded by other locks run at the same time. An insert leaving too many dead
+     * slots compacts the table, then all inserts wait for it.
+     *
+     * @param value Value to insert.
+     * @throws DuplicateValueException If the value is already stored.
+     */
+    public void insert(int value) throws DuplicateValueException {
+        if (value == EMPTY) {
+            throw new IllegalArgumentException("Value " + EMPTY + " marks empty slots and cannot be stored.");
+        }
+        int position = primaryHash.position(value, table.directory.length());
+
+        ReentrantLock lock = stripes[position % stripes.length];
+        Table table;
+        lock.lock();
+        try {
+            // a compaction holds all locks, so the table does not change while this lock is held
+            table = this.table;
+            long record = table.directory.get(position);
+            int[][] current = table.chunks;
+            if (record != 0 && probe(record, value, current) > -1) {
+                throw new DuplicateValueException("Value " + value + " already exists in the hash table.");
+            }
+
+            // copy the values of the old bucket, its slots stay as they are for lookups still reading them
+            SecondarySearch search = this.search.get();
+            int r = r(record);
+            int[] values = search.bucketValues(r + 1);
+            int count = 0;
+            for (int slot = p(record); slot < p(record) + r; slot++) {
+                int stored = current[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK];
+                if (stored != EMPTY) {
+                    values[count++] = stored;
+                }
+            }
+            values[count++] = value;
+
+            int i = 0;
+            r = count == 1 ? 1 : r + 1;
+            while (count > 1) {
+                i = search.hashValuesAreNotCollidingForR(r, values, 0, count, secondaryHash.functions());
+                if (i > -1) {
+                    break;
+                }
+                r++;
+            }
+            if (r > MAX_R) {
+                throw new IllegalStateException("Bucket needs more than " + MAX_R + " slots.");
+            }
+
+            int p = allocate(table, r);
+            int[][] grown = table.chunks;
+            for (int k = 0; k < count; k++) {
+                int slot = p + secondaryHash.hash(values[k], i, r);
+                grown[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK] = values[k];
+            }
+            // publishes the new bucket, the slots above are written before
+            table.directory.set(position, ((long) p << 32) | ((long) r << I_BITS) | i);
+            table.deadSlots.addAndGet(r(record));
+            size.increment();
+        } finally {
+            lock.unlock();
+        }
+
+        int primaryFileSize = table.primaryFileSize.get();
+        if (primaryFileSize > CHUNK_SIZE && table.deadSlots.get() > COMPACTION_THRESHOLD * primaryFileSize) {
+            compact(table);
+        }
+    }
+
+    /**
+     * Copies the buckets one after another into a new table without dead slots and publishes it. All locks
+     * are taken in order, so no insert runs meanwhile, lookups go on in the old table.
+     *
+     * @param old Table whose dead slots triggered the compaction, nothing is done if it was replaced already.
+     */
+    private void compact(Table old) {
+        for (ReentrantLock lock : stripes) {
+            lock.lock();
+        }
+        try {
+            if (table != old) {
+                return;
+            }
+            int directorySize = old.directory.length();
+            long slots = 0;
+            for (int position = 0; position < directorySize; position++) {
+                slots += r(old.directory.get(position));
+            }
+            Table compacted = new Table(directorySize, (int) slots);
+            int[][] from = old.chunks;
+            int[][] to = compacted.chunks;
+            int p = 0;
+            for (int position = 0; position < directorySize; position++) {
+                long record = old.directory.get(position);
+                if (record == 0) {
+                    continue;
+                }
+                for (int k = 0; k < r(record); k++) {
+                    int slot = p(record) + k;
+                    to[(p + k) >>> CHUNK_SHIFT][(p + k) & CHUNK_MASK] = from[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK];
+                }
+                compacted.directory.set(position, ((long) p << 32) | (record & 0xFFFFFFFFL));
+                p += r(record);
+            }
+            compacted.primaryFileSize.set(p);
+            table = compacted;
+        } finally {
+            for (int k = stripes.length - 1; k >= 0; k--) {
+                stripes[k].unlock();
+            }
+        }
+    }
+
+    /**
+     * Reserves empty slots at the end of the primary file by an atomic add, publishes a longer list
+     * of chunks if the slots are not covered yet.
+     *
+     * @param count Number of slots.
+     * @return Position of the first slot.
+     */
+    private int allocate(Table table, int count) {
+        int first = table.primaryFileSize.getAndAdd(count);
+        if (first < 0 || first > Integer.MAX_VALUE - count) {
+            throw new IllegalStateException("Primary file is full.");
+        }
+        int needed = (int) (((long) first + count + CHUNK_MASK) >>> CHUNK_SHIFT);
+        if (needed > table.chunks.length) {
+            synchronized (growLock) {
+                int[][] current = table.chunks;
+                if (needed > current.length) {
+                    int[][] grown = Arrays.copyOf(current, Math.max(needed, current.length * 2));
+                    for (int k = current.length; k < grown.length; k++) {
+                        grown[k] = newChunk();
+                    }
+                    table.chunks = grown;
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Retrieves the number of stored values.
+     *
+     * @return Number of values.
+     */
+    public int size() {
+        return size.intValue();
+    }
+
+    /**
+     * Retrieves the size of the directory.
+     *
+     * @return Number of directory positions.
+     */
+    public int getDirectorySize() {
+        return table.directory.length();
+    }
+
+    /**
+     * Retrieves the number of slots of the primary file, including the slots of replaced buckets not
+     * compacted yet.
+     *
+     * @return Size of the primary file.
+     */
+    public int getPrimaryFileSize() {
+        return table.primaryFileSize.get();
+    }
+
+    /**
+     * Retrieves the number of slots of replaced buckets, they are dropped by the next compaction.
+     *
+     * @return Number of dead slots.
+     */
+    public int getDeadSlots() {
+        return table.deadSlots.get();
+    }
+}
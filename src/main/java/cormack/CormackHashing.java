@@ -0,0 +1,2053 @@
+package cormack;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Cormack Hashing class implementing a perfect static hashing method.
+ */
+public class CormackHashing {
+
+    /** Value of an empty slot in the primary file. */
+    private static final int EMPTY = PrimaryFile.EMPTY;
+    /** a bucket with r at least this many times larger than its number of values is reordered by remove */
+    private static final int SHRINK_RATIO = 4;
+    /** latency is measured for one insert out of 16, reading the clock costs as much as a short insert */
+    private static final int LATENCY_SAMPLE_MASK = 15;
+    /** number of seeds tried when a bucket grows over the maximal size */
+    private static final int RESEED_ATTEMPTS = 16;
+    /** the directory grows for a reseed while it has fewer than this many positions per value */
+    private static final int MIN_RESEED_LOAD_INVERSE = 4;
+
+    /**
+     * Inner class representing the directory as parallel arrays, one entry per position
+     * computed by the primary hash function.
+     */
+    private static class Directory {
+        /** index of locally perfect hashing function to be used. */
+        final int[] i;
+        /** number of collisions in primary file */
+        final int[] r;
+        /** pointer to start of the primary file */
+        final int[] p;
+        /** number of values in the bucket, slots of removed values are -1 */
+        final int[] live;
+
+        Directory(int size) {
+            i = new int[size];
+            r = new int[size];
+            p = new int[size];
+            live = new int[size];
+        }
+
+        int size() {
+            return i.length;
+        }
+    }
+
+    private Directory directory;
+    /** directory before growing, its buckets are moved to the grown directory a few per insert */
+    private Directory oldDirectory;
+    /** positions of the old directory below this one are already moved */
+    private int migratedPositions;
+    /** maximal average number of values per directory position, then the directory grows */
+    private double maxLoad = Double.POSITIVE_INFINITY;
+    /** number of occupied old buckets moved per insert while the directory is growing */
+    private int migrationStep;
+    private final PrimaryFile primaryFile;
+    private PrimaryHashFamily primaryHash;
+    private final SecondaryHashFamily secondaryHash;
+    /** number of secondary functions tried for one r in the minimal mode, 0 when it is off */
+    private int minimalFunctions;
+    /** maximal number of values in a bucket, then the primary hash function is reseeded */
+    private int maxBucketSize = Integer.MAX_VALUE;
+    /** size at which no seed kept the buckets small, no table rebuild is tried until the size doubles */
+    private int failedReseedSize;
+    /** limits of the search of i and r for one reordered bucket, a bucket hitting one is split */
+    private long maxTestedFunctions = Long.MAX_VALUE;
+    private double maxRToBucketSize = Double.POSITIVE_INFINITY;
+    /** second-level directories of split buckets, shared by the directory and the old directory */
+    private final SplitDirectories splits = new SplitDirectories();
+    /** number of values stored in the primary file */
+    private int size;
+    /** number of slots in the primary file which belong to no bucket */
+    private int deadSlots;
+    private double compactionThreshold = 1;
+
+    /** metrics of inserts, plain fields so that counting does not allocate or synchronize */
+    private boolean metricsEnabled = true;
+    private long inserts;
+    private long reorders;
+    private long bucketSplits;
+    private final Log2Histogram insertLatency = new Log2Histogram();
+
+    /** receives the steps of every insert, null when nobody traces */
+    private InsertionListener insertionListener;
+
+    /** reused arrays for the search of i and r, so reordering a bucket does not allocate */
+    private final SecondarySearch search;
+
+    public CormackHashing() {
+        this(7);
+    }
+
+    /**
+     * Adds together initialization of the directory and primary file
+     */
+    public CormackHashing(int directorySize) {
+        this(directorySize, PrimaryHashFamily.modulo());
+    }
+
+    /**
+     * Creates empty CormackHashing with another primary hash function than k mod s.
+     *
+     * @param directorySize Size of the directory.
+     * @param primaryHash Primary hash function.
+     */
+    public CormackHashing(int directorySize, PrimaryHashFamily primaryHash) {
+        this(directorySize, primaryHash, SecondaryHashFamily.shift());
+    }
+
+    /**
+     * Creates empty CormackHashing with other primary and secondary hash functions than from the lecture.
+     *
+     * @param directorySize Size of the directory.
+     * @param primaryHash Primary hash function.
+     * @param secondaryHash Family of secondary hash functions.
+     */
+    public CormackHashing(int directorySize, PrimaryHashFamily primaryHash, SecondaryHashFamily secondaryHash) {
+        this(directorySize, primaryHash, secondaryHash, new ArrayPrimaryFile());
+    }
+
+    private CormackHashing(int directorySize, PrimaryHashFamily primaryHash, SecondaryHashFamily secondaryHash,
+                           PrimaryFile primaryFile) {
+        this.primaryHash = primaryHash;
+        this.secondaryHash = secondaryHash;
+        this.primaryFile = primaryFile;
+        this.search = new SecondarySearch(secondaryHash);
+        initializeDirectory(directorySize);
+    }
+
+    /**
+     * Initializes the directory with empty directory records.
+     */
+    private void initializeDirectory(int directorySize) {
+        directory = new Directory(directorySize);
+    }
+
+    /**
+     * Computes the result of the primary hash function for a given key, k mod s by default.
+     *
+     * @param key Value for hashing.
+     * @return Result of the primary hash function.
+     */
+    public int primaryHashFunction(int key) {
+        return primaryHashFunction(directory, key);
+    }
+
+    /**
+     * Computes the result of the primary hash function for a given directory.
+     */
+    private int primaryHashFunction(Directory d, int key) {
+        return primaryHash.position(key, d.size());
+    }
+
+    /**
+     * Computes the result of the secondary hash function for a given key, i, and r,
+     * (k >> i) mod r by default. The key is shifted and divided as an unsigned number,
+     * so negative keys get a slot as well.
+     *
+     * @param key Key for hashing.
+     * @param i Index of the locally perfect hashing function.
+     * @param r Number of collisions in the primary file.
+     * @return Result of the secondary hash function.
+     * @throws ArithmeticException If r is zero.
+     */
+    public int secondaryHashFunction(int key, int i, int r) {
+        if (r == 0) {
+            throw new ArithmeticException("Division by zero, if this happens sth is calling secondaryHashFunction from wrong place.");
+        }
+        return secondaryHash.hash(key, i, r);
+    }
+
+    /**
+     * Turns on the minimal mode, which keeps r close to the number of values of a bucket. A reordered bucket
+     * starts the search from r equal to its number of values instead of the previous r + 1, and for every r
+     * up to functionsPerR secondary functions are tried. More functions mean smaller buckets and a slower
+     * search, the shift family has only 32 different functions.
+     *
+     * @param functionsPerR Number of secondary functions tried for one r, 0 turns the minimal mode off.
+     */
+    public void setMinimalSearch(int functionsPerR) {
+        if (functionsPerR < 0) {
+            throw new IllegalArgumentException("Number of functions must not be negative.");
+        }
+        this.minimalFunctions = functionsPerR;
+    }
+
+    /**
+     * Checks if a directory record is not yet occupied. An occupied record has at least one slot,
+     * a bucket stored at the beginning of the primary file has p = 0 as well.
+     *
+     * @param d Directory of the record.
+     * @param position Position of the directory record to check.
+     * @return True if the record is free, false otherwise.
+     */
+    private boolean directoryRecordIsFree(Directory d, int position) {
+        return d.r[position] == 0;
+    }
+
+    /**
+     * Marks a directory record as free, its slots must be taken out of the primary file before.
+     */
+    private void freeDirectoryRecord(Directory d, int position) {
+        releaseSplit(d, position);
+        d.i[position] = 0;
+        d.r[position] = 0;
+        d.p[position] = 0;
+        d.live[position] = 0;
+    }
+
+    /**
+     * Reorders colliding values using the secondary hash function and appends them
+     * to the end of the primary file.
+     *
+     * @param d Directory of the record.
+     * @param values Array with the values to reorder at its beginning.
+     * @param count Number of values to reorder.
+     * @param position Position of the directory record, its i, r and p are updated.
+     * @param r Smallest r to try.
+     */
+    private void reorderList(Directory d, int[] values, int count, int position, int r) {
+        releaseSplit(d, position);
+        int i = 0;
+        // one value is stored as by insert into a free position, with i = 0 and r = 1
+        if (count > 1) {
+            reorders++;
+            long found = searchIAndR(values, 0, count, r, maxR(count, maxRToBucketSize), maxTestedFunctions);
+            if (found == -1) {
+                splitBucket(d, values, count, position);
+                return;
+            }
+            i = (int) found;
+            r = (int) (found >>> 32);
+        }
+
+        int p = primaryFile.append(r);
+        for (int k = 0; k < count; k++) {
+            primaryFile.set(p + secondaryHashFunction(values[k], i, r), values[k]);
+        }
+
+        d.i[position] = i;
+        d.r[position] = r;
+        d.p[position] = p;
+        d.live[position] = count;
+    }
+
+    /**
+     * Computes the largest r allowed for a number of values, at least the number of values.
+     */
+    private static long maxR(int count, double maxRToBucketSize) {
+        return Math.max(count, (long) Math.min(Long.MAX_VALUE, Math.ceil(maxRToBucketSize * count)));
+    }
+
+    /**
+     * Searches i and r for values[from..to), r goes up from the given one. At most budget functions
+     * are tested and r is at most maxR.
+     *
+     * @param r Smallest r to try, at least the number of values.
+     * @param maxR Largest r to try, at least the number of values.
+     * @param budget Maximal number of functions tested.
+     * @return r in the upper and i in the lower half, -1 if a limit was hit.
+     */
+    private long searchIAndR(int[] values, int from, int to, int r, long maxR, long budget) {
+        r = (int) Math.min(r, maxR);
+
+        long tested = search.testedFunctions();
+        while (true) {
+            long left = budget - (search.testedFunctions() - tested);
+            if (left <= 0) {
+                return -1;
+            }
+            int i = search.hashValuesAreNotCollidingForR(r, values, from, to, (int) Math.min(functionsPerR(), left));
+            if (i > -1) {
+                return ((long) r << 32) | i;
+            }
+            if (r >= maxR) {
+                return -1;
+            }
+
+            r++;
+            search.countRIncrement();
+        }
+    }
+
+    /**
+     * Stores a bucket whose search hit a limit as a split bucket. The values are divided into groups by
+     * a seeded hash and i and r are searched for every group. All groups of an attempt share one budget:
+     * together they test at most maxTestedFunctions functions and their r add up to at most
+     * maxRToBucketSize times the number of values. When the tested functions run out, the next attempt has
+     * twice the budget of functions, the groups need more tests together than one bucket. When a group
+     * needs more slots than are left, the next attempt uses twice as many groups and another seed, and after
+     * RESEED_ATTEMPTS such attempts the slots double. The limits grow only as far as the bucket needs, so
+     * it is never searched without limits.
+     *
+     * @param d Directory of the record.
+     * @param values Array with the values at its beginning.
+     * @param count Number of values.
+     * @param position Position of the directory record, it gets i = -1 - start of the second-level directory.
+     */
+    private void splitBucket(Directory d, int[] values, int count, int position) {
+        int[] grouped = search.splitValues(count);
+        int groups = 0;
+        int seed = 0;
+        int[] groupStart = null;
+        int[] found = null;
+        long budget = maxTestedFunctions;
+        double rToBucketSize = maxRToBucketSize;
+        int reseeds = 0;
+        for (int attempt = 0; found == null; attempt++) {
+            groups = (int) Math.min(count, (long) Math.max(2, count / 2) << reseeds);
+            seed = attempt + 1;
+
+            groupStart = new int[groups + 1];
+            for (int k = 0; k < count; k++) {
+                groupStart[SplitDirectories.group(values[k], seed, groups) + 1]++;
+            }
+            for (int g = 0; g < groups; g++) {
+                groupStart[g + 1] += groupStart[g];
+            }
+            int[] next = Arrays.copyOf(groupStart, groups);
+            for (int k = 0; k < count; k++) {
+                grouped[next[SplitDirectories.group(values[k], seed, groups)]++] = values[k];
+            }
+
+            // i and r of every group, a group of at most one value has i = 0 and r equal to its size
+            long tested = search.testedFunctions();
+            long slotsLeft = maxR(count, rToBucketSize);
+            found = new int[2 * groups];
+            for (int g = 0; g < groups && found != null; g++) {
+                int groupSize = groupStart[g + 1] - groupStart[g];
+                found[2 * g + 1] = groupSize;
+                if (groupSize > 1) {
+                    // the values of the later groups need at least one slot each
+                    long maxR = slotsLeft - (count - groupStart[g + 1]);
+                    long left = budget - (search.testedFunctions() - tested);
+                    long iAndR = maxR < groupSize || left <= 0
+                            ? -1 : searchIAndR(grouped, groupStart[g], groupStart[g + 1], groupSize, maxR, left);
+                    if (iAndR == -1) {
+                        found = null;
+                        if (search.testedFunctions() - tested >= budget) {
+                            budget = budget > Long.MAX_VALUE / 2 ? Long.MAX_VALUE : 2 * budget;
+                        } else if (++reseeds == RESEED_ATTEMPTS) {
+                            reseeds = 0;
+                            rToBucketSize *= 2;
+                        }
+                    } else {
+                        found[2 * g] = (int) iAndR;
+                        found[2 * g + 1] = (int) (iAndR >>> 32);
+                    }
+                }
+                if (found != null) {
+                    slotsLeft -= found[2 * g + 1];
+                }
+            }
+        }
+
+        if (splits.garbage > splits.size / 2) {
+            compactSplits();
+        }
+        int start = splits.allocate(groups);
+        int[] records = splits.records;
+        records[start + 1] = seed;
+        int slots = 0;
+        for (int g = 0; g < groups; g++) {
+            int record = start + SplitDirectories.HEADER + SplitDirectories.RECORD * g;
+            records[record] = found[2 * g];
+            records[record + 1] = found[2 * g + 1];
+            records[record + 2] = slots;
+            slots += found[2 * g + 1];
+        }
+
+        int p = primaryFile.append(slots);
+        for (int g = 0; g < groups; g++) {
+            int offset = records[start + SplitDirectories.HEADER + SplitDirectories.RECORD * g + 2];
+            for (int k = groupStart[g]; k < groupStart[g + 1]; k++) {
+                primaryFile.set(p + offset + secondaryHashFunction(grouped[k], found[2 * g], found[2 * g + 1]), grouped[k]);
+            }
+        }
+
+        d.i[position] = -1 - start;
+        d.r[position] = slots;
+        d.p[position] = p;
+        d.live[position] = count;
+        bucketSplits++;
+    }
+
+    /**
+     * Releases the second-level directory of a split bucket which is reordered or freed.
+     */
+    private void releaseSplit(Directory d, int position) {
+        if (d.i[position] < 0) {
+            splits.release(-1 - d.i[position]);
+            d.i[position] = 0;
+        }
+    }
+
+    /**
+     * Copies the second-level directories of all split buckets to a new array without the released ones.
+     */
+    private void compactSplits() {
+        int[] records = new int[Math.max(16, splits.size - splits.garbage)];
+        int size = 0;
+        for (Directory d : new Directory[]{directory, oldDirectory}) {
+            for (int position = 0; d != null && position < d.size(); position++) {
+                if (d.i[position] < 0) {
+                    int start = -1 - d.i[position];
+                    int length = SplitDirectories.length(splits.records, start);
+                    System.arraycopy(splits.records, start, records, size, length);
+                    d.i[position] = -1 - size;
+                    size += length;
+                }
+            }
+        }
+        splits.records = records;
+        splits.size = size;
+        splits.garbage = 0;
+    }
+
+    /**
+     * Limits the search of i and r for one reordered bucket. A bucket whose search tests more than
+     * maxTestedFunctions secondary functions or needs r larger than maxRToBucketSize times its number of
+     * values is split: its values are divided into small groups by a second-level directory, each group
+     * with its own i and r inside the range of the bucket. A lookup in a split bucket reads one more record.
+     * There are no limits by default, the Builder searches without limits as well.
+     *
+     * @param maxTestedFunctions Maximal number of secondary functions tested for one bucket.
+     * @param maxRToBucketSize Maximal r divided by the number of values of the bucket, at least 1.
+     */
+    public void setSearchLimits(long maxTestedFunctions, double maxRToBucketSize) {
+        if (maxTestedFunctions <= 0 || !(maxRToBucketSize >= 1)) {
+            throw new IllegalArgumentException("Number of functions must be positive and the ratio at least 1.");
+        }
+        this.maxTestedFunctions = maxTestedFunctions;
+        this.maxRToBucketSize = maxRToBucketSize;
+    }
+
+    /**
+     * Searches for the smallest i for which the secondary hash function places the values
+     * into r slots without collisions.
+     *
+     * @param r Number of slots for the values.
+     * @param values Array with the values at its beginning, must not contain -1.
+     * @param count Number of values.
+     * @return Found i, or -1 if all values hash to zero before a perfect i is found.
+     */
+    public int hashValuesAreNotCollidingForR(int r, int[] values, int count) {
+        return search.hashValuesAreNotCollidingForR(r, values, 0, count, functionsPerR());
+    }
+
+    /**
+     * Retrieves the number of secondary functions tried for one r.
+     */
+    private int functionsPerR() {
+        return minimalFunctions > 0
+                ? Math.min(minimalFunctions, secondaryHash.distinctFunctions())
+                : secondaryHash.functions();
+    }
+
+    /**
+     * Finds the position of a value in the primary file. Only one slot of the bucket is read,
+     * the one given by the secondary hash function with i and r of the directory record, or with i and r
+     * of the group of the value in a split bucket.
+     *
+     * @param d Directory of the record.
+     * @param positionInDirectory Position of the occupied directory record the value belongs to.
+     * @param value Value to look for.
+     * @return Position of the value in the primary file, -1 if it is not stored.
+     */
+    private int probe(Directory d, int positionInDirectory, int value) {
+        int i = d.i[positionInDirectory];
+        int slot = i >= 0
+                ? secondaryHashFunction(value, i, d.r[positionInDirectory])
+                : SplitDirectories.slot(splits.records, -1 - i, value, secondaryHash);
+        if (slot == -1) {
+            return -1;
+        }
+        int position = d.p[positionInDirectory] + slot;
+        return primaryFile.get(position) == value ? position : -1;
+    }
+
+    /**
+     * Finds the position of a value in the primary file with one primary and one secondary hash.
+     *
+     * @param value Value to look for.
+     * @return Position (key) of the value in the primary file, -1 if the value is not stored.
+     */
+    public int get(int value) {
+        if (value == EMPTY) {
+            return -1;
+        }
+
+        // while the directory grows, a bucket not moved yet is still in the old directory
+        if (oldDirectory != null) {
+            int oldPosition = primaryHashFunction(oldDirectory, value);
+            if (!directoryRecordIsFree(oldDirectory, oldPosition)) {
+                return probe(oldDirectory, oldPosition, value);
+            }
+        }
+
+        int positionInDirectory = primaryHashFunction(value);
+        if (directoryRecordIsFree(directory, positionInDirectory)) {
+            return -1;
+        }
+        return probe(directory, positionInDirectory, value);
+    }
+
+    /**
+     * Checks if a value is stored in CormackHashing.
+     *
+     * @param value Value to look for.
+     * @return True if the value is stored, false otherwise.
+     */
+    public boolean contains(int value) {
+        return get(value) > -1;
+    }
+
+    /**
+     * Streams the stored values without boxing. Every directory position is one range of the primary file,
+     * its -1 slots are skipped. The stream splits by ranges of directory positions, so {@code keys().parallel()}
+     * scans the buckets on several threads, a paged primary file is read by one thread. The values come in
+     * the order of the directory positions, the old directory of a growing table last. The table must not
+     * change while the stream runs.
+     *
+     * @return Stream of the stored values.
+     */
+    public IntStream keys() {
+        int buckets = directory.size() + (oldDirectory != null ? oldDirectory.size() : 0);
+        return StreamSupport.intStream(new KeySpliterator(directory, oldDirectory, primaryFile, 0, buckets, size, true), false);
+    }
+
+    /**
+     * Spliterator over the values of buckets [position, end), positions after the directory size are
+     * positions of the old directory.
+     */
+    private static final class KeySpliterator implements Spliterator.OfInt {
+        private final Directory directory;
+        private final Directory oldDirectory;
+        private final PrimaryFile primaryFile;
+        /** next bucket to open */
+        private int position;
+        private final int end;
+        /** slots key..keyEnd - 1 of the opened bucket are not read yet */
+        private int key;
+        private int keyEnd;
+        private long estimate;
+        /** only the spliterator over all buckets knows the exact number of values, until it is split */
+        private boolean sized;
+
+        KeySpliterator(Directory directory, Directory oldDirectory, PrimaryFile primaryFile, int position, int end,
+                       long estimate, boolean sized) {
+            this.directory = directory;
+            this.oldDirectory = oldDirectory;
+            this.primaryFile = primaryFile;
+            this.position = position;
+            this.end = end;
+            this.estimate = estimate;
+            this.sized = sized;
+        }
+
+        /**
+         * Sets the slots of a bucket as the slots to read.
+         */
+        private void openBucket(int bucket) {
+            Directory d = bucket < directory.size() ? directory : oldDirectory;
+            int local = bucket < directory.size() ? bucket : bucket - directory.size();
+            key = d.p[local];
+            keyEnd = key + d.r[local];
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            while (true) {
+                while (key < keyEnd) {
+                    int value = primaryFile.get(key++);
+                    if (value != EMPTY) {
+                        action.accept(value);
+                        return true;
+                    }
+                }
+                if (position >= end) {
+                    return false;
+                }
+                openBucket(position++);
+            }
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            while (true) {
+                for (; key < keyEnd; key++) {
+                    int value = primaryFile.get(key);
+                    if (value != EMPTY) {
+                        action.accept(value);
+                    }
+                }
+                if (position >= end) {
+                    return;
+                }
+                openBucket(position++);
+            }
+        }
+
+        /**
+         * Splits off the first half of the buckets not opened yet, together with the rest of the opened bucket,
+         * so the order of the values is kept.
+         */
+        @Override
+        public Spliterator.OfInt trySplit() {
+            int mid = (position + end) >>> 1;
+            if (mid <= position || !primaryFile.supportsConcurrentReads()) {
+                return null;
+            }
+            long prefixEstimate = estimate * (mid - position) / (end - position);
+            KeySpliterator prefix = new KeySpliterator(directory, oldDirectory, primaryFile, position, mid, prefixEstimate, false);
+            prefix.key = key;
+            prefix.keyEnd = keyEnd;
+            key = keyEnd;
+            position = mid;
+            estimate -= prefixEstimate;
+            sized = false;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL | (sized ? SIZED : 0);
+        }
+    }
+
+    /**
+     * Inserts a value into CormackHashing, throws duplicate exception.
+     *
+     * @param value Value to insert.
+     * @throws DuplicateValueException If the value already exists in the primary file.
+     */
+    public void insert(int value) throws DuplicateValueException {
+        if (!metricsEnabled) {
+            insertValue(value);
+            return;
+        }
+        if ((inserts & LATENCY_SAMPLE_MASK) != 0) {
+            insertValue(value);
+        } else {
+            long start = System.nanoTime();
+            insertValue(value);
+            insertLatency.record(System.nanoTime() - start);
+        }
+        // a duplicate or rejected value throws before it is counted
+        inserts++;
+    }
+
+    private void insertValue(int value) throws DuplicateValueException {
+        checkNotEmptyValue(value);
+
+        // while the directory grows, the bucket of the value is moved first if it is still in the old directory
+        if (oldDirectory != null) {
+            int oldPosition = primaryHashFunction(oldDirectory, value);
+            if (!directoryRecordIsFree(oldDirectory, oldPosition)) {
+                if (probe(oldDirectory, oldPosition, value) > -1) {
+                    throw new DuplicateValueException("Value " + value + " already exists in the hash table.");
+                }
+                migrateBucket(oldPosition);
+            }
+        }
+
+        int positionInDirectory = primaryHashFunction(value);
+
+        // is this position free?
+        boolean isFree = directoryRecordIsFree(directory, positionInDirectory);
+
+        // do not insert values that has been inserted
+        if (!isFree && probe(directory, positionInDirectory, value) > -1) {
+            throw new DuplicateValueException("Value " + value + " already exists in the hash table.");
+        }
+
+        InsertionListener listener = insertionListener;
+        if (listener != null) {
+            listener.insertStarted(value, positionInDirectory, directory.size());
+        }
+
+        int bucketSize = 1;
+        if (isFree) {
+            // If the position is free, just insert
+            directory.r[positionInDirectory] = 1;
+            directory.p[positionInDirectory] = primaryFile.append(1);
+            directory.live[positionInDirectory] = 1;
+            primaryFile.set(directory.p[positionInDirectory], value);
+        } else {
+            // Position is not free, need to reorder values that are here + the new value
+            int p = directory.p[positionInDirectory];
+            int r = directory.r[positionInDirectory];
+            int[] oneClass = search.bucketValues(r + 1);
+            int count = takeBucketValues(directory, positionInDirectory, oneClass);
+            if (listener != null) {
+                listener.bucketTaken(p, r, count);
+                search.setListener(listener);
+            }
+            oneClass[count++] = value;
+            bucketSize = count;
+
+            // repair for: r is needed to be incremented every time we add a key
+            reorderList(directory, oneClass, count, positionInDirectory, minimalFunctions > 0 ? count : r + 1);
+            if (listener != null) {
+                search.setListener(null);
+            }
+        }
+        size++;
+        if (listener != null) {
+            traceBucket(listener, positionInDirectory);
+        }
+
+        if (bucketSize > maxBucketSize && size >= 2L * failedReseedSize) {
+            rebuildWithNewSeed();
+            if (listener != null) {
+                listener.tableRebuilt();
+            }
+            return;
+        }
+        growDirectory();
+        if (deadSlots > compactionThreshold * primaryFile.size()) {
+            compact();
+            if (listener != null) {
+                listener.tableRebuilt();
+            }
+        }
+    }
+
+    /**
+     * Sends the placement of an inserted bucket and of its values to the listener.
+     */
+    private void traceBucket(InsertionListener listener, int position) {
+        int p = directory.p[position];
+        int r = directory.r[position];
+        listener.bucketPlaced(directory.i[position], r, p);
+        for (int key = p; key < p + r; key++) {
+            if (primaryFile.get(key) != EMPTY) {
+                listener.valuePlaced(primaryFile.get(key), key);
+            }
+        }
+    }
+
+    /**
+     * Registers a listener which receives the steps of every insert, the steps of insertAll are not traced.
+     * Without a listener, inserts only check one field for it.
+     *
+     * @param listener Listener to register, null to stop tracing.
+     */
+    public void setInsertionListener(InsertionListener listener) {
+        this.insertionListener = listener;
+    }
+
+    /**
+     * Inserts a batch of values, aborts the whole batch if a value is already stored or is contained
+     * in the batch more than once.
+     *
+     * @param values Values to insert.
+     * @return Number of inserted values.
+     * @throws DuplicateValueException If a value is a duplicate, then no value is inserted.
+     * @see #insertAll(int[], DuplicatePolicy)
+     */
+    public int insertAll(int[] values) throws DuplicateValueException {
+        return insertAll(values, DuplicatePolicy.ABORT);
+    }
+
+    /**
+     * Inserts a batch of values. The values are grouped by their directory position and every bucket
+     * gets all its new values at once, so it is reordered and moved to the end of the primary file only
+     * once per batch instead of once per value. When the directory grows, it grows to the final size
+     * before the values are inserted.
+     *
+     * @param values Values to insert.
+     * @param duplicates What to do with a value which is already stored or repeats in the batch.
+     * @return Number of inserted values.
+     * @throws DuplicateValueException If a value is a duplicate and the policy is ABORT, then no value is inserted.
+     */
+    public int insertAll(int[] values, DuplicatePolicy duplicates) throws DuplicateValueException {
+        for (int value : values) {
+            checkNotEmptyValue(value);
+        }
+
+        // duplicates are found before anything changes, so an aborted batch leaves the table as it was
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int k = 0; k < sorted.length; k++) {
+            if ((k > 0 && sorted[k] == sorted[k - 1]) || contains(sorted[k])) {
+                if (duplicates == DuplicatePolicy.ABORT) {
+                    throw new DuplicateValueException("Value " + sorted[k] + " already exists in the hash table.");
+                }
+                continue;
+            }
+            sorted[count++] = sorted[k];
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        finishDirectoryGrowth();
+        int grownSize = directory.size();
+        while (size + count > maxLoad * grownSize && grownSize <= Integer.MAX_VALUE / 2) {
+            grownSize *= 2;
+        }
+        if (grownSize > directory.size()) {
+            oldDirectory = directory;
+            directory = new Directory(grownSize);
+            migratedPositions = 0;
+            finishDirectoryGrowth();
+        }
+
+        // sort values by their position, the position is in the upper half
+        long[] order = new long[count];
+        for (int k = 0; k < count; k++) {
+            order[k] = ((long) primaryHashFunction(sorted[k]) << 32) | (sorted[k] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(order);
+        for (int k = 0; k < count; k++) {
+            sorted[k] = (int) order[k];
+        }
+
+        int largestBucket = 0;
+        int from = 0;
+        for (int k = 1; k <= count; k++) {
+            if (k == count || (order[k] >>> 32) != (order[from] >>> 32)) {
+                int position = (int) (order[from] >>> 32);
+                largestBucket = Math.max(largestBucket, insertIntoBucket(directory, position, sorted, from, k));
+                from = k;
+            }
+        }
+        size += count;
+        if (metricsEnabled) {
+            inserts += count;
+        }
+
+        if (largestBucket > maxBucketSize && size >= 2L * failedReseedSize) {
+            rebuildWithNewSeed();
+        } else if (deadSlots > compactionThreshold * primaryFile.size()) {
+            compact();
+        }
+        return count;
+    }
+
+    /**
+     * Removes a value. Its slot is found by one lookup and set to -1, the bucket keeps its i, r and p.
+     * When the bucket has SHRINK_RATIO times fewer values than slots, it is reordered with the smallest r
+     * that fits its values and moved to the end of the primary file, a bucket without values frees its
+     * directory record.
+     *
+     * @param value Value to remove.
+     * @return True if the value was stored, false otherwise.
+     */
+    public boolean remove(int value) {
+        if (value == EMPTY) {
+            return false;
+        }
+
+        // like insert, the bucket of the value is moved first if it is still in the old directory
+        if (oldDirectory != null) {
+            int oldPosition = primaryHashFunction(oldDirectory, value);
+            if (!directoryRecordIsFree(oldDirectory, oldPosition)) {
+                migrateBucket(oldPosition);
+            }
+        }
+
+        int position = primaryHashFunction(value);
+        int slot = directoryRecordIsFree(directory, position) ? -1 : probe(directory, position, value);
+        if (slot == -1) {
+            return false;
+        }
+        primaryFile.set(slot, EMPTY);
+        size--;
+
+        int live = --directory.live[position];
+        if (live == 0) {
+            takeBucketValues(directory, position, search.bucketValues(0));
+            freeDirectoryRecord(directory, position);
+        } else if ((long) live * SHRINK_RATIO <= directory.r[position]) {
+            int[] oneClass = search.bucketValues(directory.r[position]);
+            int count = takeBucketValues(directory, position, oneClass);
+            reorderList(directory, oneClass, count, position, count);
+        }
+
+        if (deadSlots > compactionThreshold * primaryFile.size()) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Checks that the value is not -1, which marks empty slots of the primary file.
+     */
+    private static void checkNotEmptyValue(int value) {
+        if (value == EMPTY) {
+            throw new IllegalArgumentException("Value " + EMPTY + " marks empty slots and cannot be stored.");
+        }
+    }
+
+    /**
+     * Sets the maximal number of values in one bucket. When an insert makes a bucket larger,
+     * the primary hash function gets a new seed and the whole table is built again, with a larger
+     * directory if no seed fits the values into the current one. There is no limit by default.
+     *
+     * @param maxBucketSize Maximal number of values in one bucket.
+     */
+    public void setMaxBucketSize(int maxBucketSize) {
+        if (maxBucketSize <= 0) {
+            throw new IllegalArgumentException("Maximal bucket size must be positive.");
+        }
+        this.maxBucketSize = maxBucketSize;
+        this.failedReseedSize = 0;
+    }
+
+    /**
+     * Retrieves the primary hash function, it changes when the table is reseeded.
+     *
+     * @return Current primary hash function.
+     */
+    public PrimaryHashFamily getPrimaryHash() {
+        return primaryHash;
+    }
+
+    /**
+     * Chooses a new seed of the primary hash function for which no bucket has more than maxBucketSize
+     * values and builds the directory and primary file again. If no such seed is found in RESEED_ATTEMPTS
+     * attempts, the directory is doubled and the seeds are tried again, up to a load of 1 / MIN_RESEED_LOAD_INVERSE.
+     * When even that fails, the seed with the smallest largest bucket is used and the table is not rebuilt
+     * again until its size doubles, so a bound which cannot be kept does not rebuild the table at every insert.
+     */
+    private void rebuildWithNewSeed() {
+        int[] values = liveValues();
+        int directorySize = directory.size();
+
+        PrimaryHashFamily best = primaryHash;
+        int bestLargest = Integer.MAX_VALUE;
+        long seed = primaryHash.seed();
+        while (true) {
+            int[] counts = new int[directorySize];
+            for (int attempt = 0; attempt < RESEED_ATTEMPTS && bestLargest > maxBucketSize; attempt++) {
+                seed = PrimaryHashFamily.Mixing.mix(seed + 0x9E3779B97F4A7C15L);
+                PrimaryHashFamily candidate = primaryHash.reseed(seed);
+                Arrays.fill(counts, 0);
+                int largest = 0;
+                for (int value : values) {
+                    largest = Math.max(largest, ++counts[candidate.position(value, counts.length)]);
+                }
+                if (largest < bestLargest) {
+                    best = candidate;
+                    bestLargest = largest;
+                }
+            }
+            if (bestLargest <= maxBucketSize || directorySize > Integer.MAX_VALUE / 2
+                    || (long) directorySize >= (long) MIN_RESEED_LOAD_INVERSE * values.length) {
+                break;
+            }
+            directorySize *= 2;
+            bestLargest = Integer.MAX_VALUE;
+        }
+        failedReseedSize = bestLargest > maxBucketSize ? values.length : 0;
+
+        primaryHash = best;
+        oldDirectory = null;
+        initializeDirectory(directorySize);
+        primaryFile.truncate(0);
+        primaryFile.trim();
+        deadSlots = 0;
+        splits.clear();
+        try {
+            buildFrom(values, 1);
+        } catch (DuplicateValueException e) {
+            throw new IllegalStateException("Stored values are not unique.", e);
+        }
+    }
+
+    /**
+     * Copies all values stored in the primary file.
+     *
+     * @return Array of size() values.
+     */
+    private int[] liveValues() {
+        int[] values = new int[size];
+        int count = 0;
+        for (int key = 0; key < primaryFile.size(); key++) {
+            if (primaryFile.get(key) != EMPTY) {
+                values[count++] = primaryFile.get(key);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Copies the values of a bucket and sets its slots in the primary file to -1. The slots are cut off
+     * if the bucket is at the end of the primary file, otherwise they stay as dead slots.
+     *
+     * @param d Directory of the record.
+     * @param position Position of the directory record, its i, r and p stay unchanged.
+     * @param into Array for the values, must have space for r values.
+     * @return Number of values copied to the beginning of the array.
+     */
+    private int takeBucketValues(Directory d, int position, int[] into) {
+        int p = d.p[position];
+        int r = d.r[position];
+        int count = 0;
+        for (int i = p; i < p + r; i++) {
+            // repair for: r is needed to be incremented every time we add a key
+            // if there would be more than one white space, it would always collide
+            if (primaryFile.get(i) != EMPTY) {
+                into[count++] = primaryFile.get(i);
+            }
+            // set old values to -1
+            primaryFile.set(i, EMPTY);
+        }
+
+        // If at the end of primary file, remove values for reinserting with new value
+        if (p + r >= primaryFile.size()) {
+            primaryFile.truncate(p);
+        } else {
+            deadSlots += r;
+        }
+        return count;
+    }
+
+    /**
+     * Inserts several values of one bucket, so that the bucket is reordered only once.
+     *
+     * @param d Directory of the record.
+     * @param position Position of the directory record the values belong to.
+     * @param values Values not stored yet, values[from..to) are inserted.
+     * @return Number of values in the bucket afterwards.
+     */
+    private int insertIntoBucket(Directory d, int position, int[] values, int from, int to) {
+        int added = to - from;
+        int r = d.r[position];
+        int[] oneClass = search.bucketValues(r + added);
+        int count = takeBucketValues(d, position, oneClass);
+        System.arraycopy(values, from, oneClass, count, added);
+        reorderList(d, oneClass, count + added, position, minimalFunctions > 0 ? count + added : r + added);
+        return count + added;
+    }
+
+    /**
+     * Turns on growing of the directory. When the average number of values per position exceeds
+     * maxLoad, a directory twice as large is created and the buckets of the old directory are moved
+     * to it a few per insert, so no insert has to rehash the whole table. Lookups check the old
+     * directory first while the move is not finished.
+     *
+     * @param maxLoad Maximal average number of values per directory position.
+     * @param migrationStep Number of occupied buckets moved per insert.
+     */
+    public void setDirectoryGrowth(double maxLoad, int migrationStep) {
+        if (!(maxLoad > 0) || migrationStep <= 0) {
+            throw new IllegalArgumentException("Maximal load and migration step must be positive.");
+        }
+        this.maxLoad = maxLoad;
+        this.migrationStep = migrationStep;
+    }
+
+    /**
+     * Moves a few buckets to the grown directory, or starts growing when the load is too high.
+     */
+    private void growDirectory() {
+        if (oldDirectory == null) {
+            if (size > maxLoad * directory.size()) {
+                oldDirectory = directory;
+                directory = new Directory(2 * oldDirectory.size());
+                migratedPositions = 0;
+            }
+            return;
+        }
+
+        migrateBuckets(migrationStep);
+    }
+
+    /**
+     * Moves all buckets left in the old directory, so that there is only one directory.
+     */
+    private void finishDirectoryGrowth() {
+        if (oldDirectory != null) {
+            migrateBuckets(Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Moves the next occupied buckets of the old directory and drops it when all are moved.
+     *
+     * @param count Number of occupied buckets to move.
+     */
+    private void migrateBuckets(int count) {
+        int moved = 0;
+        while (moved < count && migratedPositions < oldDirectory.size()) {
+            if (!directoryRecordIsFree(oldDirectory, migratedPositions)) {
+                migrateBucket(migratedPositions);
+                moved++;
+            }
+            migratedPositions++;
+        }
+
+        if (migratedPositions == oldDirectory.size()) {
+            oldDirectory = null;
+        }
+    }
+
+    /**
+     * Moves the values of one bucket of the old directory to the grown directory. Values going to the same
+     * position of the grown directory are inserted together, then the old directory record is freed.
+     *
+     * @param oldPosition Position of an occupied record in the old directory.
+     */
+    private void migrateBucket(int oldPosition) {
+        int count = takeBucketValues(oldDirectory, oldPosition, search.migratedValues(oldDirectory.r[oldPosition]));
+        freeDirectoryRecord(oldDirectory, oldPosition);
+
+        // sort values by their new position, the position is in the upper half
+        long[] order = search.migrationOrder(count);
+        int[] values = search.migratedValues(count);
+        for (int k = 0; k < count; k++) {
+            order[k] = ((long) primaryHashFunction(directory, values[k]) << 32) | (values[k] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(order, 0, count);
+        for (int k = 0; k < count; k++) {
+            values[k] = (int) order[k];
+        }
+
+        int from = 0;
+        for (int k = 1; k <= count; k++) {
+            if (k == count || (order[k] >>> 32) != (order[from] >>> 32)) {
+                insertIntoBucket(directory, (int) (order[from] >>> 32), values, from, k);
+                from = k;
+            }
+        }
+    }
+
+    /**
+     * Moves all buckets to the beginning of the primary file, so that there are no -1 slots
+     * left behind by reordered buckets, and updates p of every directory record.
+     * The order of the buckets in the primary file is kept.
+     */
+    public void compact() {
+        if (deadSlots == 0) {
+            return;
+        }
+
+        // occupied positions sorted by p, p is in the upper half so sorting longs is enough,
+        // bit 31 tells that the position is in the old directory
+        int records = directory.size() + (oldDirectory != null ? oldDirectory.size() : 0);
+        long[] buckets = new long[records];
+        int count = 0;
+        for (int position = 0; position < directory.size(); position++) {
+            if (!directoryRecordIsFree(directory, position)) {
+                buckets[count++] = ((long) directory.p[position] << 32) | position;
+            }
+        }
+        for (int position = 0; oldDirectory != null && position < oldDirectory.size(); position++) {
+            if (!directoryRecordIsFree(oldDirectory, position)) {
+                buckets[count++] = ((long) oldDirectory.p[position] << 32) | 0x80000000L | position;
+            }
+        }
+        Arrays.sort(buckets, 0, count);
+
+        int target = 0;
+        for (int k = 0; k < count; k++) {
+            Directory d = (buckets[k] & 0x80000000L) != 0 ? oldDirectory : directory;
+            int position = (int) (buckets[k] & 0x7FFFFFFF);
+            int p = d.p[position];
+            int r = d.r[position];
+            // a paged primary file keeps the bucket in one page, the skipped slots are emptied
+            int start = primaryFile.alignedStart(target, r);
+            for (; target < start; target++) {
+                primaryFile.set(target, EMPTY);
+            }
+            // target is never after p, so copying forward does not overwrite values not yet moved
+            for (int slot = 0; slot < r; slot++) {
+                primaryFile.set(target + slot, primaryFile.get(p + slot));
+            }
+            d.p[position] = target;
+            target += r;
+        }
+
+        primaryFile.truncate(target);
+        primaryFile.trim();
+        deadSlots = 0;
+    }
+
+    /**
+     * Sets the ratio of -1 slots left behind by reordered buckets to the size of the primary file
+     * above which insert compacts the primary file. Threshold 1 turns automatic compaction off,
+     * which is the default.
+     *
+     * @param compactionThreshold Ratio between 0 and 1.
+     */
+    public void setCompactionThreshold(double compactionThreshold) {
+        if (!(compactionThreshold > 0 && compactionThreshold <= 1)) {
+            throw new IllegalArgumentException("Compaction threshold must be greater than 0 and at most 1.");
+        }
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Retrieves the number of slots in the primary file which belong to no bucket and can be reclaimed
+     * by compaction, slots skipped to keep a bucket in one page are not counted.
+     *
+     * @return Number of -1 slots left behind by reordered buckets.
+     */
+    public int getDeadSlots() {
+        return deadSlots;
+    }
+
+    /**
+     * Builds CormackHashing from all values at once, the directory has one position
+     * for every two values.
+     *
+     * @param values Values to store.
+     * @return CormackHashing containing the values.
+     * @throws DuplicateValueException If a value is contained more than once.
+     * @see Builder
+     */
+    public static CormackHashing build(int[] values) throws DuplicateValueException {
+        return new Builder().build(values);
+    }
+
+    /**
+     * Builder for CormackHashing constructed from a known set of values. Values are firstly divided
+     * by the primary hash function, then i and r are found once for every bucket and the buckets
+     * are stored one after another, so there are no -1 slots between them.
+     */
+    public static class Builder {
+        private int directorySize;
+        private int parallelism = 1;
+        private PrimaryHashFamily primaryHash = PrimaryHashFamily.modulo();
+        private SecondaryHashFamily secondaryHash = SecondaryHashFamily.shift();
+        private int minimalFunctions;
+        private Path pagedFile;
+        private int pageBytes;
+        private int bufferPoolPages;
+
+        /**
+         * Sets the size of the directory, by default there is one position for every two values.
+         */
+        public Builder directorySize(int directorySize) {
+            if (directorySize <= 0) {
+                throw new IllegalArgumentException("Directory size must be positive.");
+            }
+            this.directorySize = directorySize;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads finding i and r of the buckets, by default the build is sequential.
+         * The result does not depend on the parallelism.
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException("Parallelism must be positive.");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Sets the primary hash function, k mod s by default.
+         */
+        public Builder primaryHash(PrimaryHashFamily primaryHash) {
+            this.primaryHash = primaryHash;
+            return this;
+        }
+
+        /**
+         * Sets the family of secondary hash functions, (k >> i) mod r by default.
+         */
+        public Builder secondaryHash(SecondaryHashFamily secondaryHash) {
+            this.secondaryHash = secondaryHash;
+            return this;
+        }
+
+        /**
+         * Tries up to functionsPerR secondary functions for every r, see {@link CormackHashing#setMinimalSearch(int)}.
+         * The built table stays in the minimal mode for later inserts.
+         */
+        public Builder minimal(int functionsPerR) {
+            if (functionsPerR <= 0) {
+                throw new IllegalArgumentException("Number of functions must be positive.");
+            }
+            this.minimalFunctions = functionsPerR;
+            return this;
+        }
+
+        /**
+         * Stores the primary file in pages of a file on disk instead of an array, only bufferPoolPages pages
+         * are held in memory. The directory stays in memory, so a lookup reads at most one page. Building
+         * from no values gives an empty table for inserts. The table must be closed by {@link CormackHashing#close()}.
+         *
+         * @param file File for the pages, an existing file is overwritten.
+         * @param pageBytes Size of one page, a multiple of 4 bytes.
+         * @param bufferPoolPages Number of pages held in memory.
+         */
+        public Builder pagedPrimaryFile(Path file, int pageBytes, int bufferPoolPages) {
+            if (pageBytes < Integer.BYTES || pageBytes % Integer.BYTES != 0) {
+                throw new IllegalArgumentException("Page size must be a positive multiple of " + Integer.BYTES + " bytes.");
+            }
+            if (bufferPoolPages <= 0) {
+                throw new IllegalArgumentException("Buffer pool must hold at least one page.");
+            }
+            this.pagedFile = file;
+            this.pageBytes = pageBytes;
+            this.bufferPoolPages = bufferPoolPages;
+            return this;
+        }
+
+        /**
+         * Builds CormackHashing containing the values.
+         *
+         * @param values Values to store.
+         * @return CormackHashing containing the values.
+         * @throws DuplicateValueException If a value is contained more than once.
+         * @throws UncheckedIOException If the file of a paged primary file cannot be created.
+         */
+        public CormackHashing build(int[] values) throws DuplicateValueException {
+            int size = directorySize > 0 ? directorySize : Math.max(1, values.length / 2);
+            for (int value : values) {
+                checkNotEmptyValue(value);
+            }
+            PrimaryFile primaryFile = new ArrayPrimaryFile();
+            if (pagedFile != null) {
+                try {
+                    primaryFile = PagedPrimaryFile.create(pagedFile, pageBytes, bufferPoolPages);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            CormackHashing cormackHashing = new CormackHashing(size, primaryHash, secondaryHash, primaryFile);
+            cormackHashing.setMinimalSearch(minimalFunctions);
+            cormackHashing.buildFrom(values, parallelism);
+            return cormackHashing;
+        }
+    }
+
+    /**
+     * Fills empty CormackHashing with all values in one pass.
+     */
+    private void buildFrom(int[] values, int parallelism) throws DuplicateValueException {
+        int directorySize = directory.size();
+
+        // divide values into buckets by the primary hash function
+        int[] bucketStart = new int[directorySize + 1];
+        for (int value : values) {
+            bucketStart[primaryHashFunction(value) + 1]++;
+        }
+        for (int position = 0; position < directorySize; position++) {
+            bucketStart[position + 1] += bucketStart[position];
+        }
+        int[] buckets = new int[values.length];
+        int[] next = Arrays.copyOf(bucketStart, directorySize);
+        for (int value : values) {
+            buckets[next[primaryHashFunction(value)]++] = value;
+        }
+
+        // find i and r for every bucket
+        if (parallelism > 1) {
+            solveBucketsInParallel(buckets, bucketStart, parallelism);
+        } else {
+            for (int position = 0; position < directorySize; position++) {
+                solveBucket(buckets, bucketStart[position], bucketStart[position + 1], position, search);
+            }
+        }
+
+        // store buckets one after another, p is the prefix sum of r unless a bucket is moved to the next page
+        int p = 0;
+        for (int position = 0; position < directorySize; position++) {
+            if (directory.r[position] > 0) {
+                p = primaryFile.alignedStart(p, directory.r[position]);
+            }
+            directory.p[position] = directory.r[position] > 0 ? p : 0;
+            p += directory.r[position];
+        }
+        primaryFile.append(p);
+        for (int position = 0; position < directorySize; position++) {
+            for (int k = bucketStart[position]; k < bucketStart[position + 1]; k++) {
+                primaryFile.set(directory.p[position] + secondaryHashFunction(buckets[k], directory.i[position], directory.r[position]), buckets[k]);
+            }
+        }
+        size = values.length;
+    }
+
+    /**
+     * Finds i and r for the values of one bucket, starting from r equal to the number of values.
+     *
+     * @param values Values of all buckets, values[from..to) get sorted.
+     * @param position Position of the directory record, its i and r are set.
+     * @param search Search used by the current thread.
+     * @throws DuplicateValueException If a value is contained more than once.
+     */
+    private void solveBucket(int[] values, int from, int to, int position, SecondarySearch search) throws DuplicateValueException {
+        if (from == to) {
+            return;
+        }
+
+        Arrays.sort(values, from, to);
+        for (int k = from + 1; k < to; k++) {
+            if (values[k] == values[k - 1]) {
+                throw new DuplicateValueException("Value " + values[k] + " already exists in the hash table.");
+            }
+        }
+
+        // one value is stored as by insert, with i = 0 and r = 1
+        int i = 0;
+        int r = to - from;
+        if (r > 1) {
+            while (true) {
+                i = search.hashValuesAreNotCollidingForR(r, values, from, to, functionsPerR());
+                if (i > -1) {
+                    break;
+                }
+
+                r++;
+                search.countRIncrement();
+            }
+        }
+
+        directory.i[position] = i;
+        directory.r[position] = r;
+        directory.live[position] = to - from;
+    }
+
+    /**
+     * Finds i and r for all buckets on a fork-join pool. Buckets are independent, so every task
+     * solves a range of directory positions with its own search.
+     */
+    private void solveBucketsInParallel(int[] buckets, int[] bucketStart, int parallelism) throws DuplicateValueException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            int leafSize = Math.max(1, directory.size() / (parallelism * 16));
+            pool.invoke(new SolveBucketsTask(buckets, bucketStart, 0, directory.size(), leafSize));
+        } catch (DuplicateInTaskException e) {
+            throw (DuplicateValueException) e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Task solving buckets at directory positions [from, to), splits in halves down to leafSize positions.
+     */
+    private class SolveBucketsTask extends RecursiveAction {
+        private final int[] buckets;
+        private final int[] bucketStart;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+
+        SolveBucketsTask(int[] buckets, int[] bucketStart, int from, int to, int leafSize) {
+            this.buckets = buckets;
+            this.bucketStart = bucketStart;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > leafSize) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SolveBucketsTask(buckets, bucketStart, from, middle, leafSize),
+                        new SolveBucketsTask(buckets, bucketStart, middle, to, leafSize));
+                return;
+            }
+
+            SecondarySearch taskSearch = new SecondarySearch(secondaryHash);
+            try {
+                for (int position = from; position < to; position++) {
+                    solveBucket(buckets, bucketStart[position], bucketStart[position + 1], position, taskSearch);
+                }
+            } catch (DuplicateValueException e) {
+                throw new DuplicateInTaskException(e);
+            } finally {
+                // the table's search waits for the pool, the tasks add their counts to it one at a time
+                synchronized (search) {
+                    search.addCounts(taskSearch);
+                }
+            }
+        }
+    }
+
+    /**
+     * Carries DuplicateValueException out of a fork-join task.
+     */
+    private static class DuplicateInTaskException extends RuntimeException {
+        DuplicateInTaskException(DuplicateValueException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Saves the table to a file which can be opened by {@link MappedCormackHashing#open(Path)}.
+     * Buckets are written one after another in the order of the directory, without -1 slots between them.
+     * If the directory is growing, the remaining buckets are moved first.
+     *
+     * @param file File to write, it is replaced if it exists.
+     * @throws IOException If writing fails.
+     * @throws IllegalArgumentException If the hash functions are not the built-in ones.
+     */
+    public void save(Path file) throws IOException {
+        finishDirectoryGrowth();
+        int slots = 0;
+        int splitInts = 0;
+        for (int position = 0; position < directory.size(); position++) {
+            slots += directory.r[position];
+            if (directory.i[position] < 0) {
+                splitInts += SplitDirectories.length(splits.records, -1 - directory.i[position]);
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            TableFormat.writeHeader(buffer, primaryHash, secondaryHash, directory.size(), size, slots, splitInts);
+
+            // second-level directories are written one after another in the order of the positions
+            int p = 0;
+            int splitStart = 0;
+            for (int position = 0; position < directory.size(); position++) {
+                int i = directory.i[position];
+                int r = directory.r[position];
+                if (i < 0) {
+                    int start = splitStart;
+                    splitStart += SplitDirectories.length(splits.records, -1 - i);
+                    i = -1 - start;
+                }
+                writeInt(channel, buffer, i);
+                writeInt(channel, buffer, r);
+                writeInt(channel, buffer, r > 0 ? p : 0);
+                p += r;
+            }
+            for (int position = 0; position < directory.size(); position++) {
+                for (int key = directory.p[position]; key < directory.p[position] + directory.r[position]; key++) {
+                    writeInt(channel, buffer, primaryFile.get(key));
+                }
+            }
+            for (int position = 0; position < directory.size(); position++) {
+                int i = directory.i[position];
+                if (i < 0) {
+                    int start = -1 - i;
+                    for (int k = start; k < start + SplitDirectories.length(splits.records, start); k++) {
+                        writeInt(channel, buffer, splits.records[k]);
+                    }
+                }
+            }
+
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Makes an immutable copy of the table for lookups only. The buckets are copied one after another
+     * without the -1 slots between them and every directory record is packed into one long, so a lookup
+     * reads one long and one int, a split bucket reads its group record as well. A growing directory is
+     * finished first, the table can be used further.
+     *
+     * @return Frozen copy of the table.
+     * @throws IllegalStateException If some i and r do not fit into 32 bits together.
+     */
+    public FrozenCormackHashing freeze() {
+        finishDirectoryGrowth();
+        int slots = 0;
+        int maxI = 0;
+        int maxR = 0;
+        int splitBuckets = 0;
+        for (int position = 0; position < directory.size(); position++) {
+            slots += directory.r[position];
+            maxR = Math.max(maxR, directory.r[position]);
+            if (directory.i[position] < 0) {
+                splitBuckets++;
+            } else {
+                maxI = Math.max(maxI, directory.i[position]);
+            }
+        }
+        // a split bucket stores the number of its second-level directory in i, with the highest bit of i set
+        int iBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(maxI, splitBuckets - 1)));
+        int splitFlag = 0;
+        if (splitBuckets > 0) {
+            splitFlag = 1 << iBits;
+            iBits++;
+        }
+        if (maxR >>> (32 - iBits) != 0) {
+            throw new IllegalStateException("r = " + maxR + " and i = " + maxI + " cannot be packed into 32 bits.");
+        }
+
+        long[] records = new long[directory.size()];
+        int[] values = new int[slots];
+        int[] splitStart = new int[splitBuckets];
+        int[] splitRecords = new int[splits.size - splits.garbage];
+        int splitSize = 0;
+        int p = 0;
+        for (int position = 0; position < directory.size(); position++) {
+            int r = directory.r[position];
+            if (r == 0) {
+                continue;
+            }
+            int i = directory.i[position];
+            if (i < 0) {
+                int length = SplitDirectories.length(splits.records, -1 - i);
+                System.arraycopy(splits.records, -1 - i, splitRecords, splitSize, length);
+                splitStart[--splitBuckets] = splitSize;
+                splitSize += length;
+                i = splitFlag | splitBuckets;
+            }
+            records[position] = FrozenCormackHashing.pack(i, r, p, iBits);
+            for (int slot = 0; slot < r; slot++) {
+                values[p + slot] = primaryFile.get(directory.p[position] + slot);
+            }
+            p += r;
+        }
+        return new FrozenCormackHashing(primaryHash, secondaryHash, records, values, iBits, size, splitFlag,
+                splitStart, splitRecords);
+    }
+
+    /**
+     * Puts an int into the buffer, writes the buffer to the channel when it is full.
+     */
+    private static void writeInt(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+        if (buffer.remaining() < Integer.BYTES) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        buffer.putInt(value);
+    }
+
+    /**
+     * Reads a table saved by {@link #save(Path)} into memory, so that values can be inserted again.
+     * The loaded table has the saved hash functions and no dead slots.
+     *
+     * @param file File written by save.
+     * @return Table with the saved values.
+     * @throws IOException If the file cannot be read or is not a saved table.
+     */
+    public static CormackHashing load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = TableFormat.readHeader(channel);
+            int directorySize = header.getInt(TableFormat.DIRECTORY_SIZE_OFFSET);
+            int slots = header.getInt(TableFormat.PRIMARY_FILE_SIZE_OFFSET);
+            int splitInts = header.getInt(TableFormat.SPLITS_OFFSET);
+            TableFormat.checkSizes(header);
+            if (channel.size() < TableFormat.splitsOffset(directorySize, slots) + (long) Integer.BYTES * splitInts) {
+                throw new IOException("File is too short for a Cormack hashing table.");
+            }
+
+            CormackHashing cormackHashing = new CormackHashing(directorySize, TableFormat.primaryHash(header),
+                    TableFormat.secondaryHash(header));
+            Directory d = cormackHashing.directory;
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            channel.position(TableFormat.HEADER_BYTES);
+            for (int position = 0; position < directorySize; position++) {
+                d.i[position] = readInt(channel, buffer);
+                d.r[position] = readInt(channel, buffer);
+                d.p[position] = readInt(channel, buffer);
+            }
+
+            PrimaryFile primaryFile = cormackHashing.primaryFile;
+            primaryFile.append(slots);
+            for (int key = 0; key < slots; key++) {
+                primaryFile.set(key, readInt(channel, buffer));
+            }
+            SplitDirectories splits = cormackHashing.splits;
+            splits.records = new int[Math.max(16, splitInts)];
+            for (int k = 0; k < splitInts; k++) {
+                splits.records[k] = readInt(channel, buffer);
+            }
+            splits.size = splitInts;
+            for (int position = 0; position < directorySize; position++) {
+                TableFormat.checkDirectoryRecord(position, d.i[position], d.r[position], d.p[position], slots,
+                        splits.records, splits.size);
+                for (int key = d.p[position]; key < d.p[position] + d.r[position]; key++) {
+                    if (primaryFile.get(key) != EMPTY) {
+                        d.live[position]++;
+                    }
+                }
+                cormackHashing.size += d.live[position];
+            }
+            if (cormackHashing.size != header.getInt(TableFormat.SIZE_OFFSET)) {
+                throw new IOException("Number of values does not match the header.");
+            }
+            return cormackHashing;
+        }
+    }
+
+    /**
+     * Takes an int from the buffer, reads the next part of the channel into the buffer when it is empty.
+     */
+    private static int readInt(FileChannel channel, ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < Integer.BYTES) {
+            buffer.compact();
+            while (buffer.position() < Integer.BYTES) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("File is too short for a Cormack hashing table.");
+                }
+            }
+            buffer.flip();
+        }
+        return buffer.getInt();
+    }
+
+    /**
+     * Turns the metrics of inserts on or off, they are on by default. The latency of every 16th insert
+     * is measured.
+     *
+     * @param metricsEnabled True to collect the metrics.
+     */
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    /**
+     * Takes a snapshot of the metrics. The counters are copied, the slot and bucket numbers are computed
+     * by one pass over the directory.
+     *
+     * @return Snapshot of the metrics.
+     */
+    public CormackHashingMetrics getMetrics() {
+        Log2Histogram bucketSizes = new Log2Histogram();
+        long slotsInBuckets = 0;
+        double maxRToBucketSize = 0;
+        for (Directory d : new Directory[]{directory, oldDirectory}) {
+            for (int position = 0; d != null && position < d.size(); position++) {
+                int r = d.r[position];
+                if (r == 0) {
+                    continue;
+                }
+                int live = d.live[position];
+                bucketSizes.record(live);
+                slotsInBuckets += r;
+                maxRToBucketSize = Math.max(maxRToBucketSize, live > 0 ? (double) r / live : r);
+            }
+        }
+        return new CormackHashingMetrics(inserts, reorders, search.testedFunctions(), search.rIncrements(), bucketSplits,
+                insertLatency.copy(), bucketSizes, size, deadSlots, (int) (slotsInBuckets - size), maxRToBucketSize);
+    }
+
+    /**
+     * Publishes the metrics as an MXBean in the platform MBean server.
+     *
+     * @param name Object name, for example {@code cormack:type=CormackHashing,name=ids}.
+     * @return Name of the registered MXBean.
+     * @throws JMException If the name is not valid or already registered.
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName(name);
+        ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(new StandardMBean(new MetricsBean(), CormackHashingMXBean.class, true), objectName);
+        return objectName;
+    }
+
+    /**
+     * MXBean reading the counters directly. The attributes computed by a pass over the directory come
+     * from one snapshot which is reused for SNAPSHOT_NANOS, so a client reading all attributes scans
+     * the directory once.
+     */
+    private class MetricsBean implements CormackHashingMXBean {
+        private static final long SNAPSHOT_NANOS = 1_000_000_000L;
+
+        private CormackHashingMetrics snapshot;
+        private long snapshotTaken;
+
+        private synchronized CormackHashingMetrics snapshot() {
+            long now = System.nanoTime();
+            if (snapshot == null || now - snapshotTaken >= SNAPSHOT_NANOS) {
+                snapshot = getMetrics();
+                snapshotTaken = now;
+            }
+            return snapshot;
+        }
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public int getDirectorySize() {
+            return directory.size();
+        }
+
+        @Override
+        public long getInserts() {
+            return inserts;
+        }
+
+        @Override
+        public long getReorders() {
+            return reorders;
+        }
+
+        @Override
+        public long getTestedFunctions() {
+            return search.testedFunctions();
+        }
+
+        @Override
+        public long getRIncrements() {
+            return search.rIncrements();
+        }
+
+        @Override
+        public long getBucketSplits() {
+            return bucketSplits;
+        }
+
+        @Override
+        public long getInsertLatencyMedianNanos() {
+            return insertLatency.quantile(0.5);
+        }
+
+        @Override
+        public long getInsertLatency99thPercentileNanos() {
+            return insertLatency.quantile(0.99);
+        }
+
+        @Override
+        public long[] getInsertLatencyHistogram() {
+            return insertLatency.counts();
+        }
+
+        @Override
+        public long[] getBucketSizeHistogram() {
+            return snapshot().getBucketSizes().counts();
+        }
+
+        @Override
+        public int getLiveSlots() {
+            return size;
+        }
+
+        @Override
+        public int getDeadSlots() {
+            return deadSlots;
+        }
+
+        @Override
+        public int getEmptySlotsInBuckets() {
+            return snapshot().getEmptySlotsInBuckets();
+        }
+
+        @Override
+        public double getMaxRToBucketSize() {
+            return snapshot().getMaxRToBucketSize();
+        }
+    }
+
+    /**
+     * Retrieves the number of values stored in CormackHashing.
+     *
+     * @return Number of stored values.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the size of the directory, the grown one while the buckets are being moved.
+     *
+     * @return Number of directory positions.
+     */
+    public int getDirectorySize() {
+        return directory.size();
+    }
+
+    /**
+     * Retrieves the number of slots in the primary file, including -1 slots.
+     *
+     * @return Size of the primary file.
+     */
+    public int getPrimaryFileSize() {
+        return primaryFile.size();
+    }
+
+    /**
+     * Computes the heap memory taken by the directory, primary file and second-level directory arrays,
+     * including the unused capacity of the primary file. A paged primary file takes the pages of its buffer pool.
+     *
+     * @return Number of bytes taken by the arrays.
+     */
+    public long memoryFootprint() {
+        int directoryRecords = directory.size() + (oldDirectory != null ? oldDirectory.size() : 0);
+        return 4L * Integer.BYTES * directoryRecords + (long) Integer.BYTES * primaryFile.capacity()
+                + (long) Integer.BYTES * splits.records.length;
+    }
+
+    /**
+     * Retrieves the page counters of a paged primary file, see {@link Builder#pagedPrimaryFile(Path, int, int)}.
+     * A primary file in memory has all counters zero.
+     *
+     * @return Snapshot of the counters.
+     */
+    public IoStatistics getIoStatistics() {
+        return primaryFile.statistics();
+    }
+
+    /**
+     * Writes the changed pages of a paged primary file to disk, does nothing for a primary file in memory.
+     *
+     * @throws IOException If the pages cannot be written.
+     */
+    public void flush() throws IOException {
+        primaryFile.flush();
+    }
+
+    /**
+     * Writes the changed pages of a paged primary file to disk and closes its file. The table cannot be used
+     * afterwards. Does nothing for a primary file in memory.
+     *
+     * @throws IOException If the pages cannot be written.
+     */
+    public void close() throws IOException {
+        primaryFile.close();
+    }
+
+    /**
+     * Prints the current directory and primary file to the console.
+     */
+    public void printStructure() {
+        System.out.println("\nDIRECTORY =========");
+        System.out.println("Position i r p");
+        for (int position = 0; position < directory.size(); position++) {
+            System.out.printf("    %d    %d %d %d%n", position, directory.i[position], directory.r[position], directory.p[position]);
+        }
+
+        if (oldDirectory != null) {
+            System.out.println("\nOLD DIRECTORY (moved up to position " + migratedPositions + ") =========");
+            System.out.println("Position i r p");
+            for (int position = 0; position < oldDirectory.size(); position++) {
+                System.out.printf("    %d    %d %d %d%n", position, oldDirectory.i[position], oldDirectory.r[position], oldDirectory.p[position]);
+            }
+        }
+
+        System.out.println("\nPRIMARY FILE =========");
+        System.out.println("Key value");
+        for (int key = 0; key < primaryFile.size(); key++) {
+            System.out.printf(" %d  %d%n", key, primaryFile.get(key));
+        }
+    }
+
+    /**
+     * Retrieves the current state of CormackHashing as a formatted string.
+     *
+     * @return Current state of CormackHashing.
+     */
+    public String getCurrentState() {
+        StringBuilder state = new StringBuilder();
+        state.append("\nDIRECTORY =========\n");
+        state.append("Position i r p\n");
+        for (int position = 0; position < directory.size(); position++) {
+            state.append(String.format("     %d     %d %d %d%n", position, directory.i[position], directory.r[position], directory.p[position]));
+        }
+
+        if (oldDirectory != null) {
+            state.append("\nOLD DIRECTORY (moved up to position ").append(migratedPositions).append(") =========\n");
+            state.append("Position i r p\n");
+            for (int position = 0; position < oldDirectory.size(); position++) {
+                state.append(String.format("     %d     %d %d %d%n", position, oldDirectory.i[position], oldDirectory.r[position], oldDirectory.p[position]));
+            }
+        }
+
+        state.append("\nPRIMARY FILE =========\n");
+        state.append("Key value\n");
+        for (int key = 0; key < primaryFile.size(); key++) {
+            state.append(String.format(" %d  %d%n", key, primaryFile.get(key)));
+        }
+
+        return state.toString();
+    }
+
+    /**
+     * Checks if the directory position is free for inserting a value.
+     *
+     * @param value Value to check.
+     * @return True if the directory position is free, false otherwise.
+     */
+    public boolean directoryIsFreeForValue(int value) {
+        return directoryRecordIsFree(directory, primaryHashFunction(value));
+    }
+
+    /**
+     * Retrieves the values that need to be reinserted when inserting a new value.
+     *
+     * @param value Value for which reinsertion of values is required.
+     * @return List of values for reinsertion.
+     */
+    public List<Integer> getValuesForReinsertingWithInsertedValue(int value) {
+        int positionInDirectory = primaryHashFunction(value);
+        int p = directory.p[positionInDirectory];
+
+        List<Integer> values = new ArrayList<>();
+        for (int i = p; i < p + directory.r[positionInDirectory]; i++) {
+            values.add(primaryFile.get(i));
+        }
+
+        return values;
+    }
+
+    /**
+     * Retrieves the index `i` and number of collisions `r` from the nth record in the directory.
+     * A split bucket has a negative i, see {@link #setSearchLimits(long, double)}.
+     *
+     * @param n Index of the directory record.
+     * @return Array containing i and r.
+     */
+    public int[] getIAndRFromNthDirectoryRecord(int n) {
+        return new int[]{directory.i[n], directory.r[n]};
+    }
+
+    /**
+     * Retrieves the pointer `p` to the primary file from the nth record in the directory.
+     *
+     * @param n Index of the directory record.
+     * @return Pointer p.
+     */
+    public int getPFromNthDirectoryRecord(int n) {
+        return directory.p[n];
+    }
+
+    /**
+     * Retrieves the value stored under a key of the primary file.
+     *
+     * @param key Key (position) in the primary file.
+     * @return Stored value, -1 for an empty slot.
+     */
+    public int getPrimaryFileValue(int key) {
+        return primaryFile.get(key);
+    }
+}
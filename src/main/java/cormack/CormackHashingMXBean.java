@@ -0,0 +1,39 @@
+package cormack;
+
+/**
+ * Metrics of a table published over JMX by {@link CormackHashing#registerMBean(String)}.
+ * Counters are read directly. The bucket size histogram, the empty slots in buckets and the largest
+ * ratio of r to bucket size need a pass over the directory and come from a snapshot at most a second
+ * old, so values read while inserts run may be slightly inconsistent.
+ */
+public interface CormackHashingMXBean {
+    int getSize();
+
+    int getDirectorySize();
+
+    long getInserts();
+
+    long getReorders();
+
+    long getTestedFunctions();
+
+    long getRIncrements();
+
+    long getBucketSplits();
+
+    long getInsertLatencyMedianNanos();
+
+    long getInsertLatency99thPercentileNanos();
+
+    long[] getInsertLatencyHistogram();
+
+    long[] getBucketSizeHistogram();
+
+    int getLiveSlots();
+
+    int getDeadSlots();
+
+    int getEmptySlotsInBuckets();
+
+    double getMaxRToBucketSize();
+}
@@ -0,0 +1,94 @@
+package cormack;
+
+/**
+ * Snapshot of the metrics of a table taken by {@link CormackHashing#getMetrics()}. The counters and the
+ * latency histogram are collected by inserts, the slot and bucket numbers are computed from the directory
+ * when the snapshot is taken.
+ */
+public final class CormackHashingMetrics {
+    private final long inserts;
+    private final long reorders;
+    private final long testedFunctions;
+    private final long rIncrements;
+    private final long bucketSplits;
+    private final Log2Histogram insertLatency;
+    private final Log2Histogram bucketSizes;
+    private final int liveSlots;
+    private final int deadSlots;
+    private final int emptySlotsInBuckets;
+    private final double maxRToBucketSize;
+
+    CormackHashingMetrics(long inserts, long reorders, long testedFunctions, long rIncrements, long bucketSplits,
+                          Log2Histogram insertLatency, Log2Histogram bucketSizes, int liveSlots, int deadSlots,
+                          int emptySlotsInBuckets, double maxRToBucketSize) {
+        this.inserts = inserts;
+        this.reorders = reorders;
+        this.testedFunctions = testedFunctions;
+        this.rIncrements = rIncrements;
+        this.bucketSplits = bucketSplits;
+        this.insertLatency = insertLatency;
+        this.bucketSizes = bucketSizes;
+        this.liveSlots = liveSlots;
+        this.deadSlots = deadSlots;
+        this.emptySlotsInBuckets = emptySlotsInBuckets;
+        this.maxRToBucketSize = maxRToBucketSize;
+    }
+
+    /** Number of inserted values, a batch counts all its values. Duplicates and rejected values are not counted. */
+    public long getInserts() {
+        return inserts;
+    }
+
+    /** Number of buckets reordered by the search of i and r. */
+    public long getReorders() {
+        return reorders;
+    }
+
+    /** Number of i candidates tested by all searches of i and r: inserts, builds and rebuilds. */
+    public long getTestedFunctions() {
+        return testedFunctions;
+    }
+
+    /** Number of times a search went on with r + 1 because no i was found, counted by the same searches. */
+    public long getRIncrements() {
+        return rIncrements;
+    }
+
+    /** Number of times a bucket was split because its search hit a limit. */
+    public long getBucketSplits() {
+        return bucketSplits;
+    }
+
+    /** Latency of single inserts in nanoseconds, measured for every 16th insert. */
+    public Log2Histogram getInsertLatency() {
+        return insertLatency;
+    }
+
+    /** Number of values of the occupied buckets. */
+    public Log2Histogram getBucketSizes() {
+        return bucketSizes;
+    }
+
+    /** Number of slots holding a value. */
+    public int getLiveSlots() {
+        return liveSlots;
+    }
+
+    /**
+     * Number of -1 slots left behind by reordered buckets. Slots skipped to keep a bucket in one page of a
+     * paged primary file are not counted, they are the primary file size minus live, dead and empty slots in buckets.
+     */
+    public int getDeadSlots() {
+        return deadSlots;
+    }
+
+    /** Number of -1 slots inside buckets, r minus the number of values summed over the buckets. */
+    public int getEmptySlotsInBuckets() {
+        return emptySlotsInBuckets;
+    }
+
+    /** Largest r divided by the number of values of its bucket. */
+    public double getMaxRToBucketSize() {
+        return maxRToBucketSize;
+    }
+}
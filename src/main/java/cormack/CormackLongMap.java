@@ -0,0 +1,499 @@
+package cormack;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Map from long keys to byte values using Cormack hashing. Every long is a valid key, occupied slots are
+ * marked in a bitmap instead of by -1. Keys and values are stored off-heap in direct buffers, so a large
+ * map adds almost nothing to the garbage collected heap: the heap holds only the directory and the bitmap.
+ * <p>
+ * A map has either values of a fixed length, stored in the slot next to the key, or values of any length,
+ * appended to a value log while the slot holds their location and length.
+ * <p>
+ * Like {@link CormackHashing}, a reordered bucket moves to the end of the primary file and leaves its old
+ * slots dead. When more than half of the primary file is dead or more than half of the value log holds
+ * replaced or removed values, the map is rebuilt into new buffers, and the directory doubles when the map
+ * has more than MAX_LOAD keys per position.
+ */
+public final class CormackLongMap {
+    /** size of one direct buffer holding slots or values */
+    private static final int SEGMENT_BYTES = 1 << 20;
+    /** number of secondary functions tried for one r */
+    private static final int FUNCTIONS = 64;
+    private static final long PRIMARY_SEED = 0x9E3779B97F4A7C15L;
+    /** the directory doubles when the map has more keys per position */
+    private static final int MAX_LOAD = 2;
+    /** the map is rebuilt when this part of the primary file or of the value log is dead */
+    private static final double COMPACTION_THRESHOLD = 0.5;
+    /** in a map with values of any length the slot holds the location of the value and its length */
+    private static final int LOCATION_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final PrimaryHashFamily primaryHash = PrimaryHashFamily.mixing(PRIMARY_SEED);
+    private final SecondaryHashFamily secondaryHash = SecondaryHashFamily.multiplyShift(1, FUNCTIONS);
+    private final SecondarySearch search = new SecondarySearch(secondaryHash);
+
+    private int[] i;
+    private int[] r;
+    private int[] p;
+    /** length of every value, -1 for values of any length */
+    private final int valueBytes;
+    private final int slotBytes;
+    private final int slotsPerSegment;
+
+    private final List<ByteBuffer> slotSegments = new ArrayList<>();
+    /** bit of every slot of the primary file, set when the slot holds a key */
+    private long[] occupied = new long[16];
+    private int primaryFileSize;
+    /** slots of the buckets in the directory, the other slots of the primary file are dead */
+    private int bucketSlots;
+    private int size;
+
+    private final List<ByteBuffer> valueLog = new ArrayList<>();
+    /** bytes appended to the value log and bytes of the values still stored */
+    private long valueLogBytes;
+    private long liveValueBytes;
+
+    private CormackLongMap(int directorySize, int valueBytes) {
+        if (directorySize <= 0) {
+            throw new IllegalArgumentException("Directory size must be positive.");
+        }
+        this.i = new int[directorySize];
+        this.r = new int[directorySize];
+        this.p = new int[directorySize];
+        this.valueBytes = valueBytes;
+        this.slotBytes = Long.BYTES + (valueBytes >= 0 ? valueBytes : LOCATION_BYTES);
+        if (slotBytes > SEGMENT_BYTES) {
+            throw new IllegalArgumentException("Values of a fixed length must be shorter than " + SEGMENT_BYTES + " bytes.");
+        }
+        this.slotsPerSegment = SEGMENT_BYTES / slotBytes;
+    }
+
+    /**
+     * Creates an empty map whose values all have the same length.
+     *
+     * @param directorySize Size of the directory.
+     * @param valueBytes Length of every value.
+     * @return Empty map.
+     */
+    public static CormackLongMap fixedLength(int directorySize, int valueBytes) {
+        if (valueBytes < 0) {
+            throw new IllegalArgumentException("Value length must not be negative.");
+        }
+        return new CormackLongMap(directorySize, valueBytes);
+    }
+
+    /**
+     * Creates an empty map with values of any length.
+     *
+     * @param directorySize Size of the directory.
+     * @return Empty map.
+     */
+    public static CormackLongMap variableLength(int directorySize) {
+        return new CormackLongMap(directorySize, -1);
+    }
+
+    private ByteBuffer segment(int slot) {
+        return slotSegments.get(slot / slotsPerSegment);
+    }
+
+    private int offset(int slot) {
+        return (slot % slotsPerSegment) * slotBytes;
+    }
+
+    private boolean isOccupied(int slot) {
+        return (occupied[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private void setOccupied(int slot, boolean value) {
+        if (value) {
+            occupied[slot >>> 6] |= 1L << slot;
+        } else {
+            occupied[slot >>> 6] &= ~(1L << slot);
+        }
+    }
+
+    /**
+     * Finds the slot of a key with one primary and one secondary hash.
+     *
+     * @return Slot of the key, -1 if the key is not stored.
+     */
+    private int find(long key) {
+        int position = primaryHash.position(key, i.length);
+        if (r[position] == 0) {
+            return -1;
+        }
+        int slot = p[position] + secondaryHash.hash(key, i[position], r[position]);
+        return isOccupied(slot) && segment(slot).getLong(offset(slot)) == key ? slot : -1;
+    }
+
+    /**
+     * Checks if a key is stored.
+     *
+     * @param key Key to look for.
+     * @return True if the key is stored, false otherwise.
+     */
+    public boolean containsKey(long key) {
+        return find(key) > -1;
+    }
+
+    /**
+     * Copies the value of a key into a buffer, nothing is allocated.
+     *
+     * @param key Key to look for.
+     * @param target Buffer receiving the value at its position, its position is moved past the value.
+     * @return Length of the value, -1 if the key is not stored.
+     * @throws BufferOverflowException If the value does not fit into the buffer.
+     */
+    public int get(long key, ByteBuffer target) {
+        int slot = find(key);
+        if (slot == -1) {
+            return -1;
+        }
+        int offset = offset(slot) + Long.BYTES;
+        ByteBuffer source = segment(slot);
+        int length = valueBytes;
+        if (valueBytes < 0) {
+            long location = source.getLong(offset);
+            length = source.getInt(offset + Long.BYTES);
+            source = valueLog.get((int) (location >>> 32));
+            offset = (int) location;
+        }
+        if (target.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        for (int k = 0; k < length; k++) {
+            target.put(source.get(offset + k));
+        }
+        return length;
+    }
+
+    /**
+     * Retrieves a copy of the value of a key.
+     *
+     * @param key Key to look for.
+     * @return Value, null if the key is not stored.
+     */
+    public byte[] get(long key) {
+        int slot = find(key);
+        if (slot == -1) {
+            return null;
+        }
+        ByteBuffer value = value(slot);
+        byte[] copy = new byte[value.remaining()];
+        value.get(copy);
+        return copy;
+    }
+
+    /**
+     * Returns a read-only view of the value stored for a slot.
+     */
+    private ByteBuffer value(int slot) {
+        int offset = offset(slot) + Long.BYTES;
+        if (valueBytes >= 0) {
+            ByteBuffer segment = segment(slot).duplicate();
+            segment.limit(offset + valueBytes).position(offset);
+            return segment.slice().asReadOnlyBuffer();
+        }
+        long location = segment(slot).getLong(offset);
+        int length = segment(slot).getInt(offset + Long.BYTES);
+        ByteBuffer log = valueLog.get((int) (location >>> 32)).duplicate();
+        log.limit((int) location + length).position((int) location);
+        return log.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Stores a value for a key, the value of a stored key is replaced.
+     *
+     * @param key Key, any long.
+     * @param value Value, of the fixed length if the map has one.
+     * @return True if the key was not stored before, false if its value was replaced.
+     */
+    public boolean put(long key, byte[] value) {
+        if (valueBytes >= 0 && value.length != valueBytes) {
+            throw new IllegalArgumentException("Value must have " + valueBytes + " bytes.");
+        }
+
+        int slot = find(key);
+        if (slot > -1) {
+            if (valueBytes < 0) {
+                liveValueBytes -= valueLength(slot);
+            }
+            writeValue(slot, value);
+            compactIfWasteful();
+            return false;
+        }
+
+        if (size >= (long) MAX_LOAD * i.length && i.length <= Integer.MAX_VALUE / 2) {
+            rebuild(i.length * 2);
+        }
+        int position = primaryHash.position(key, i.length);
+        int oldR = r[position];
+        int oldP = p[position];
+
+        // collect the keys of the bucket and the new key
+        long[] keys = search.bucketKeys(oldR + 1);
+        int count = 0;
+        for (int s = oldP; s < oldP + oldR; s++) {
+            if (isOccupied(s)) {
+                keys[count++] = segment(s).getLong(offset(s));
+            }
+        }
+        keys[count++] = key;
+
+        long iAndR = searchIAndR(keys, count);
+        int newI = (int) iAndR;
+        int newR = (int) (iAndR >>> 32);
+
+        // move the keys with their values to new slots at the end of the primary file
+        int newP = append(newR);
+        for (int k = 0; k < count - 1; k++) {
+            int from = oldP + secondaryHash.hash(keys[k], i[position], oldR);
+            int to = newP + secondaryHash.hash(keys[k], newI, newR);
+            copySlot(slotSegments, from, to);
+            setOccupied(to, true);
+        }
+        for (int s = oldP; s < oldP + oldR; s++) {
+            setOccupied(s, false);
+        }
+        int to = newP + secondaryHash.hash(key, newI, newR);
+        segment(to).putLong(offset(to), key);
+        writeValue(to, value);
+        setOccupied(to, true);
+
+        i[position] = newI;
+        r[position] = newR;
+        p[position] = newP;
+        bucketSlots += newR - oldR;
+        size++;
+        compactIfWasteful();
+        return true;
+    }
+
+    /**
+     * Searches for the smallest r and the smallest i for it which place the keys without collisions.
+     *
+     * @return r in the upper half and i in the lower half.
+     */
+    private long searchIAndR(long[] keys, int count) {
+        int foundI = 0;
+        int foundR = count;
+        while (count > 1 && (foundI = search.keysAreNotCollidingForR(foundR, keys, count, secondaryHash.functions())) == -1) {
+            foundR++;
+        }
+        return ((long) foundR << 32) | foundI;
+    }
+
+    /**
+     * Copies a slot with its key and value, or the location of the value, from buffers into a slot of the primary file.
+     */
+    private void copySlot(List<ByteBuffer> fromSegments, int from, int to) {
+        ByteBuffer source = fromSegments.get(from / slotsPerSegment).duplicate();
+        source.limit(offset(from) + slotBytes).position(offset(from));
+        ByteBuffer target = segment(to).duplicate();
+        target.position(offset(to));
+        target.put(source);
+    }
+
+    /**
+     * Rebuilds the map when too much of the primary file or of the value log is dead.
+     */
+    private void compactIfWasteful() {
+        if (primaryFileSize - bucketSlots > COMPACTION_THRESHOLD * primaryFileSize
+                || valueLogBytes - liveValueBytes > COMPACTION_THRESHOLD * valueLogBytes) {
+            rebuild(i.length);
+        }
+    }
+
+    /**
+     * Places all keys into a directory of a given size, with the slots and values copied into new buffers
+     * without dead slots and replaced values. The old buffers are freed by the garbage collector.
+     */
+    private void rebuild(int directorySize) {
+        List<ByteBuffer> oldSegments = new ArrayList<>(slotSegments);
+        List<ByteBuffer> oldValueLog = new ArrayList<>(valueLog);
+
+        // keys sorted by their new position, the index of the key is in the lower half
+        long[] keys = new long[size];
+        int[] oldSlots = new int[size];
+        long[] order = new long[size];
+        int count = 0;
+        for (int position = 0; position < i.length; position++) {
+            for (int s = p[position]; s < p[position] + r[position]; s++) {
+                if (isOccupied(s)) {
+                    keys[count] = segment(s).getLong(offset(s));
+                    oldSlots[count] = s;
+                    order[count] = ((long) primaryHash.position(keys[count], directorySize) << 32) | count;
+                    count++;
+                }
+            }
+        }
+        Arrays.sort(order);
+
+        i = new int[directorySize];
+        r = new int[directorySize];
+        p = new int[directorySize];
+        slotSegments.clear();
+        occupied = new long[16];
+        primaryFileSize = 0;
+        bucketSlots = 0;
+        valueLog.clear();
+        valueLogBytes = 0;
+
+        int from = 0;
+        for (int k = 1; k <= count; k++) {
+            if (k == count || (order[k] >>> 32) != (order[from] >>> 32)) {
+                int position = (int) (order[from] >>> 32);
+                long[] bucket = search.bucketKeys(k - from);
+                for (int m = from; m < k; m++) {
+                    bucket[m - from] = keys[(int) order[m]];
+                }
+                long iAndR = searchIAndR(bucket, k - from);
+                i[position] = (int) iAndR;
+                r[position] = (int) (iAndR >>> 32);
+                p[position] = append(r[position]);
+                bucketSlots += r[position];
+
+                for (int m = from; m < k; m++) {
+                    int index = (int) order[m];
+                    int to = p[position] + secondaryHash.hash(keys[index], i[position], r[position]);
+                    copySlot(oldSegments, oldSlots[index], to);
+                    if (valueBytes < 0) {
+                        ByteBuffer slots = segment(to);
+                        int offset = offset(to) + Long.BYTES;
+                        long location = slots.getLong(offset);
+                        ByteBuffer value = oldValueLog.get((int) (location >>> 32)).duplicate();
+                        value.limit((int) location + slots.getInt(offset + Long.BYTES)).position((int) location);
+                        slots.putLong(offset, appendToValueLog(value));
+                    }
+                    setOccupied(to, true);
+                }
+                from = k;
+            }
+        }
+    }
+
+    /**
+     * Writes a value into a slot, a value of any length is appended to the value log.
+     */
+    private void writeValue(int slot, byte[] value) {
+        ByteBuffer segment = segment(slot);
+        int offset = offset(slot) + Long.BYTES;
+        if (valueBytes >= 0) {
+            for (int k = 0; k < value.length; k++) {
+                segment.put(offset + k, value[k]);
+            }
+            return;
+        }
+        segment.putLong(offset, appendToValueLog(ByteBuffer.wrap(value)));
+        segment.putInt(offset + Long.BYTES, value.length);
+        liveValueBytes += value.length;
+    }
+
+    /**
+     * Reads the length of a value of any length stored for a slot.
+     */
+    private int valueLength(int slot) {
+        return segment(slot).getInt(offset(slot) + Long.BYTES + Long.BYTES);
+    }
+
+    /**
+     * Appends the remaining bytes of a buffer to the value log, a value longer than a segment gets a segment of its own.
+     *
+     * @return Index of the segment in the upper half and offset of the value in the lower half.
+     */
+    private long appendToValueLog(ByteBuffer value) {
+        int length = value.remaining();
+        ByteBuffer last = valueLog.isEmpty() ? null : valueLog.get(valueLog.size() - 1);
+        if (last == null || last.remaining() < length) {
+            last = ByteBuffer.allocateDirect(Math.max(SEGMENT_BYTES, length));
+            valueLog.add(last);
+        }
+        long location = ((long) (valueLog.size() - 1) << 32) | last.position();
+        last.put(value);
+        valueLogBytes += length;
+        return location;
+    }
+
+    /**
+     * Reserves slots at the end of the primary file, they are not occupied.
+     */
+    private int append(int count) {
+        int first = primaryFileSize;
+        primaryFileSize += count;
+        while (slotSegments.size() * (long) slotsPerSegment < primaryFileSize) {
+            slotSegments.add(ByteBuffer.allocateDirect(slotsPerSegment * slotBytes).order(ByteOrder.LITTLE_ENDIAN));
+        }
+        if (occupied.length * 64L < primaryFileSize) {
+            occupied = Arrays.copyOf(occupied, Math.max((primaryFileSize + 63) >>> 6, occupied.length * 2));
+        }
+        return first;
+    }
+
+    /**
+     * Removes a key, its slot stays in the bucket as a free slot until the bucket is reordered or the map rebuilt.
+     *
+     * @param key Key to remove.
+     * @return True if the key was stored, false otherwise.
+     */
+    public boolean remove(long key) {
+        int slot = find(key);
+        if (slot == -1) {
+            return false;
+        }
+        if (valueBytes < 0) {
+            liveValueBytes -= valueLength(slot);
+        }
+        setOccupied(slot, false);
+        size--;
+        compactIfWasteful();
+        return true;
+    }
+
+    /**
+     * Retrieves the number of stored keys.
+     *
+     * @return Number of keys.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the size of the directory, it doubles as the map grows.
+     *
+     * @return Number of directory positions.
+     */
+    public int getDirectorySize() {
+        return i.length;
+    }
+
+    /**
+     * Retrieves the number of slots of the primary file, including the dead slots of moved buckets.
+     *
+     * @return Size of the primary file.
+     */
+    public int getPrimaryFileSize() {
+        return primaryFileSize;
+    }
+
+    /**
+     * Computes the off-heap memory taken by the slots and the value log.
+     *
+     * @return Number of bytes of the direct buffers.
+     */
+    public long offHeapBytes() {
+        long bytes = 0;
+        for (ByteBuffer segment : slotSegments) {
+            bytes += segment.capacity();
+        }
+        for (ByteBuffer segment : valueLog) {
+            bytes += segment.capacity();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,110 @@
+package cormack;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model showing the directory records, the cells are read from the table only when the JTable paints
+ * them, so only the visible rows are ever read.
+ */
+class DirectoryTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"Position", "i", "r", "p"};
+
+    private final CormackHashing cormackHashing;
+    private int rowCount;
+    /** the table is changed by a background thread, the cells must not be read */
+    private boolean updating;
+    /** record changed by the insert being walked through, shown as it was before the insert, -1 for none */
+    private int heldPosition = -1;
+    private final int[] heldRecord = new int[3];
+
+    DirectoryTableModel(CormackHashing cormackHashing) {
+        this.cormackHashing = cormackHashing;
+        this.rowCount = cormackHashing.getDirectorySize();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return Integer.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (updating) {
+            return null;
+        }
+        if (row == heldPosition && column > 0) {
+            return heldRecord[column - 1];
+        }
+        switch (column) {
+            case 0:
+                return row;
+            case 1:
+                return cormackHashing.getIAndRFromNthDirectoryRecord(row)[0];
+            case 2:
+                return cormackHashing.getIAndRFromNthDirectoryRecord(row)[1];
+            default:
+                return cormackHashing.getPFromNthDirectoryRecord(row);
+        }
+    }
+
+    /**
+     * Marks the table as being changed off the Event Dispatch Thread, no cell is read until it is unmarked.
+     *
+     * @param updating True while the table is changed.
+     */
+    void setUpdating(boolean updating) {
+        this.updating = updating;
+    }
+
+    /**
+     * Keeps showing a record as it is now, before an insert changes it, until {@link #release()}.
+     *
+     * @param position Position of the record the insert changes.
+     */
+    void hold(int position) {
+        int[] iAndR = cormackHashing.getIAndRFromNthDirectoryRecord(position);
+        heldRecord[0] = iAndR[0];
+        heldRecord[1] = iAndR[1];
+        heldRecord[2] = cormackHashing.getPFromNthDirectoryRecord(position);
+        heldPosition = position;
+    }
+
+    /**
+     * Shows the held record as it is in the table again, the caller fires the change of its row.
+     */
+    void release() {
+        heldPosition = -1;
+    }
+
+    /**
+     * Repaints one directory record.
+     *
+     * @param position Position of the changed record.
+     */
+    void positionChanged(int position) {
+        fireTableRowsUpdated(position, position);
+    }
+
+    /**
+     * Rereads the whole directory, after it was resized or rebuilt.
+     */
+    void refresh() {
+        rowCount = cormackHashing.getDirectorySize();
+        fireTableDataChanged();
+    }
+}
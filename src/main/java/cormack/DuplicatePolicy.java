@@ -0,0 +1,11 @@
+package cormack;
+
+/**
+ * What a batch insert does with a value which is already stored or repeats in the batch.
+ */
+public enum DuplicatePolicy {
+    /** throw DuplicateValueException and insert nothing */
+    ABORT,
+    /** insert the value once and leave out the other copies */
+    SKIP
+}
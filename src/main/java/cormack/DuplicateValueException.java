@@ -1,3 +1,5 @@
+package cormack;
+
 public class DuplicateValueException extends Exception {
     public DuplicateValueException(String message) {
         super(message);
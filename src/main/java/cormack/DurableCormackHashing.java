@@ -0,0 +1,543 @@
+package cormack;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * CormackHashing which survives a crash of the process. Every change is appended to a write-ahead log
+ * before it counts as durable, and a checkpoint saves the whole table as a snapshot and starts a new
+ * empty log. Opening the directory again loads the last snapshot and replays its log.
+ * <p>
+ * The log is forced to disk once per group of records: after groupCommitRecords records, or by a
+ * background thread maxCommitDelayMillis after the first record of the group. Changes of a group not
+ * forced yet are lost by a crash, {@link #sync()} forces them at once. A group of 1 makes every change durable before it returns.
+ * <p>
+ * Files of a checkpoint generation g are {@code snapshot-g.cormack} and {@code wal-g.log}, the log
+ * holds the changes made after the snapshot was saved. A snapshot is renamed to its final name only
+ * when it is complete, so a crash during a checkpoint leaves the previous generation in use.
+ * Methods are synchronized, the table can be used by several threads.
+ */
+public final class DurableCormackHashing implements Closeable {
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".cormack";
+    private static final String LOG_PREFIX = "wal-";
+    private static final String LOG_SUFFIX = ".log";
+
+    /** types of log records, a record is type, count, count values and CRC32 of all before */
+    private static final byte INSERT = 1;
+    private static final byte INSERT_ALL_ABORT = 2;
+    private static final byte INSERT_ALL_SKIP = 3;
+    private static final byte REMOVE = 4;
+    private static final int RECORD_OVERHEAD = 1 + 2 * Integer.BYTES;
+
+    private final Path directory;
+    private final CormackHashing table;
+    private long generation;
+    private FileChannel log;
+
+    /** records not forced to the log yet */
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 12).order(ByteOrder.LITTLE_ENDIAN);
+    private int pendingRecords;
+    private long firstPendingNanos;
+    private final CRC32 crc = new CRC32();
+    /** buffer of the record read by the replay */
+    private ByteBuffer record;
+
+    private int groupCommitRecords = 1;
+    private long maxCommitDelayNanos;
+    /** forces groups which waited maxCommitDelayNanos, created by the first delay set */
+    private ScheduledExecutorService flusher;
+    private long checkpointLogBytes = Long.MAX_VALUE;
+
+    private DurableCormackHashing(Path directory, CormackHashing table, long generation) {
+        this.directory = directory;
+        this.table = table;
+        this.generation = generation;
+    }
+
+    /**
+     * Opens a durable table in a directory, a new table is a CormackHashing with the default settings,
+     * see {@link #open(Path, Supplier)}.
+     *
+     * @param directory Directory of the snapshot and the log, created if missing.
+     * @param directorySize Size of the directory of a new table, a loaded table keeps its size.
+     * @return Recovered table.
+     * @throws IOException If the files cannot be read, a snapshot is damaged or valid log records follow a damaged one.
+     */
+    public static DurableCormackHashing open(Path directory, int directorySize) throws IOException {
+        return open(directory, () -> new CormackHashing(directorySize));
+    }
+
+    /**
+     * Opens a durable table in a directory. The last snapshot is loaded and its log replayed, records
+     * cut off or damaged by a crash at the end of the log are dropped. An empty directory gives the
+     * table of the factory, so it can be configured, a loaded table keeps the size and hash functions
+     * saved in its snapshot.
+     *
+     * @param directory Directory of the snapshot and the log, created if missing.
+     * @param newTable Creates an empty table when there is no snapshot yet.
+     * @return Recovered table.
+     * @throws IOException If the files cannot be read, a snapshot is damaged or valid log records follow a damaged one.
+     * @throws IllegalArgumentException If the new table is not empty.
+     */
+    public static DurableCormackHashing open(Path directory, Supplier<CormackHashing> newTable) throws IOException {
+        Files.createDirectories(directory);
+        long generation = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path file : files) {
+                generation = Math.max(generation, generation(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX));
+            }
+        }
+
+        CormackHashing table = generation >= 0
+                ? CormackHashing.load(directory.resolve(SNAPSHOT_PREFIX + generation + SNAPSHOT_SUFFIX))
+                : newTable.get();
+        if (generation < 0 && table.size() > 0) {
+            // values not in the log would be lost by the next recovery
+            throw new IllegalArgumentException("New table must be empty.");
+        }
+        DurableCormackHashing durable = new DurableCormackHashing(directory, table, Math.max(generation, 0));
+        try {
+            durable.replay();
+        } catch (IOException | RuntimeException e) {
+            if (durable.log != null) {
+                durable.log.close();
+            }
+            throw e;
+        }
+        durable.deleteOlderGenerations();
+        return durable;
+    }
+
+    private static long generation(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Path logFile(long generation) {
+        return directory.resolve(LOG_PREFIX + generation + LOG_SUFFIX);
+    }
+
+    private Path snapshotFile(long generation) {
+        return directory.resolve(SNAPSHOT_PREFIX + generation + SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * Applies the records of the log of the current generation and opens the log for appending. The log
+     * is read one record at a time, so its size is not limited by one buffer. At the first record that is
+     * cut off or damaged, the rest of the log is searched for a valid record: if there is none, the rest
+     * was left by a crash and is dropped, otherwise records after the damage would be lost and the recovery fails.
+     */
+    private void replay() throws IOException {
+        log = FileChannel.open(logFile(generation), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = log.size();
+        record = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+        long end = 0;
+        for (int bytes = readRecord(end, size); bytes > 0; bytes = readRecord(end, size)) {
+            int[] values = new int[record.getInt(1)];
+            for (int k = 0; k < values.length; k++) {
+                values[k] = record.getInt(1 + Integer.BYTES * (k + 1));
+            }
+            apply(record.get(0), values);
+            end += bytes;
+        }
+
+        if (end < size) {
+            // the length of the damaged record cannot be trusted, every later position is tried
+            for (long next = end + 1; next <= size - RECORD_OVERHEAD; next++) {
+                if (readRecord(next, size) > 0) {
+                    throw new IOException("Log record at " + end + " is damaged, valid records follow it at " + next + ".");
+                }
+            }
+            log.truncate(end);
+        }
+        log.position(end);
+        record = null;
+    }
+
+    /**
+     * Reads the record at a position of the log into the record buffer, the buffer is grown for large records.
+     *
+     * @return Length of the record in bytes, 0 if no complete record with a matching checksum starts there.
+     */
+    private int readRecord(long position, long size) throws IOException {
+        if (size - position < RECORD_OVERHEAD) {
+            return 0;
+        }
+        record.clear().limit(1 + Integer.BYTES);
+        readFully(record, position);
+        int count = record.getInt(1);
+        long bytes = RECORD_OVERHEAD + (long) Integer.BYTES * count;
+        if (count < 0 || position + bytes > size || bytes > Integer.MAX_VALUE - 8) {
+            return 0;
+        }
+        if (record.capacity() < bytes) {
+            record = ByteBuffer.allocate((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        record.clear().limit((int) bytes);
+        readFully(record, position);
+
+        crc.reset();
+        crc.update(record.array(), 0, (int) bytes - Integer.BYTES);
+        return record.getInt((int) bytes - Integer.BYTES) == (int) crc.getValue() ? (int) bytes : 0;
+    }
+
+    /**
+     * Reads the log from a position until the buffer is full.
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (log.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Log ended while it was read.");
+            }
+        }
+    }
+
+    private void apply(byte type, int[] values) throws IOException {
+        try {
+            switch (type) {
+                case INSERT:
+                    table.insert(values[0]);
+                    break;
+                case INSERT_ALL_ABORT:
+                    table.insertAll(values, DuplicatePolicy.ABORT);
+                    break;
+                case INSERT_ALL_SKIP:
+                    table.insertAll(values, DuplicatePolicy.SKIP);
+                    break;
+                case REMOVE:
+                    table.remove(values[0]);
+                    break;
+                default:
+                    throw new IOException("Unknown log record " + type + ".");
+            }
+        } catch (DuplicateValueException e) {
+            throw new IOException("Log does not match the snapshot.", e);
+        }
+    }
+
+    private void deleteOlderGenerations() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long fileGeneration = name.startsWith(SNAPSHOT_PREFIX)
+                        ? generation(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)
+                        : name.startsWith(LOG_PREFIX) ? generation(file, LOG_PREFIX, LOG_SUFFIX) : generation;
+                if (fileGeneration < generation || name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets how many log records are forced to disk together. Records wait at most maxCommitDelayMillis
+     * for the group to fill, then a background thread forces the group even if no change follows.
+     *
+     * @param groupCommitRecords Number of records forced together, 1 forces every record.
+     * @param maxCommitDelayMillis Longest time a record waits for the group, 0 for no limit.
+     */
+    public synchronized void setGroupCommit(int groupCommitRecords, long maxCommitDelayMillis) {
+        if (groupCommitRecords <= 0 || maxCommitDelayMillis < 0) {
+            throw new IllegalArgumentException("Group size must be positive and the delay must not be negative.");
+        }
+        this.groupCommitRecords = groupCommitRecords;
+        this.maxCommitDelayNanos = maxCommitDelayMillis * 1_000_000;
+        if (maxCommitDelayNanos > 0 && flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "cormack-group-commit");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Forces the pending group when it waited maxCommitDelayNanos. The task is scheduled for every group,
+     * a task of a group written before finds a younger group or none and does nothing. If writing fails,
+     * the records stay pending and the next change or sync reports the failure.
+     */
+    private synchronized void flushLateGroup() {
+        if (pendingRecords > 0 && maxCommitDelayNanos > 0 && System.nanoTime() - firstPendingNanos >= maxCommitDelayNanos) {
+            try {
+                writePending();
+            } catch (IOException e) {
+                // the records stay pending
+            }
+        }
+    }
+
+    /**
+     * Sets the size of the log after which a checkpoint is made, there are no automatic checkpoints by default.
+     * Recovery replays at most this much of the log.
+     *
+     * @param checkpointLogBytes Size of the log in bytes.
+     */
+    public synchronized void setCheckpointLogBytes(long checkpointLogBytes) {
+        if (checkpointLogBytes <= 0) {
+            throw new IllegalArgumentException("Log size must be positive.");
+        }
+        this.checkpointLogBytes = checkpointLogBytes;
+    }
+
+    /**
+     * Logs a value and inserts it. The table changes only after the record is added to the log, so a
+     * failed write leaves the table as it was.
+     *
+     * @param value Value to insert.
+     * @throws DuplicateValueException If the value already exists, nothing is logged then.
+     * @throws IOException If the log cannot be written, the value is not inserted then.
+     */
+    public synchronized void insert(int value) throws DuplicateValueException, IOException {
+        if (value == PrimaryFile.EMPTY) {
+            throw new IllegalArgumentException("Value " + value + " marks empty slots and cannot be stored.");
+        }
+        if (table.contains(value)) {
+            throw new DuplicateValueException("Value " + value + " already exists in the hash table.");
+        }
+        boolean written = logRecord(INSERT, new int[]{value}, 1);
+        table.insert(value);
+        checkpointIfLogIsLarge(written);
+    }
+
+    /**
+     * Logs a batch of values as one record and inserts it, see {@link CormackHashing#insertAll(int[], DuplicatePolicy)}.
+     *
+     * @param values Values to insert.
+     * @param duplicates What to do with duplicate values.
+     * @return Number of inserted values.
+     * @throws DuplicateValueException If a value is a duplicate and the policy is ABORT, nothing is logged then.
+     * @throws IOException If the log cannot be written, no value is inserted then.
+     */
+    public synchronized int insertAll(int[] values, DuplicatePolicy duplicates) throws DuplicateValueException, IOException {
+        if (!hasNewValues(values, duplicates)) {
+            return 0;
+        }
+        boolean written = logRecord(duplicates == DuplicatePolicy.ABORT ? INSERT_ALL_ABORT : INSERT_ALL_SKIP,
+                values, values.length);
+        int inserted = table.insertAll(values, duplicates);
+        checkpointIfLogIsLarge(written);
+        return inserted;
+    }
+
+    /**
+     * Checks a batch like insertAll does before it changes the table.
+     *
+     * @return True if insertAll inserts at least one value.
+     * @throws DuplicateValueException If a value is a duplicate and the policy is ABORT.
+     */
+    private boolean hasNewValues(int[] values, DuplicatePolicy duplicates) throws DuplicateValueException {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        boolean hasNew = false;
+        for (int k = 0; k < sorted.length; k++) {
+            if (sorted[k] == PrimaryFile.EMPTY) {
+                throw new IllegalArgumentException("Value " + PrimaryFile.EMPTY + " marks empty slots and cannot be stored.");
+            }
+            if ((k > 0 && sorted[k] == sorted[k - 1]) || table.contains(sorted[k])) {
+                if (duplicates == DuplicatePolicy.ABORT) {
+                    throw new DuplicateValueException("Value " + sorted[k] + " already exists in the hash table.");
+                }
+            } else {
+                hasNew = true;
+            }
+        }
+        return hasNew;
+    }
+
+    /**
+     * Logs the removal of a value and removes it.
+     *
+     * @param value Value to remove.
+     * @return True if the value was stored, nothing is logged otherwise.
+     * @throws IOException If the log cannot be written, the value stays stored then.
+     */
+    public synchronized boolean remove(int value) throws IOException {
+        if (!table.contains(value)) {
+            return false;
+        }
+        boolean written = logRecord(REMOVE, new int[]{value}, 1);
+        table.remove(value);
+        checkpointIfLogIsLarge(written);
+        return true;
+    }
+
+    public synchronized boolean contains(int value) {
+        return table.contains(value);
+    }
+
+    public synchronized int size() {
+        return table.size();
+    }
+
+    /**
+     * Adds a record to the pending group and forces the group when it is full or waited too long. If
+     * forcing fails, the record is taken out of the group again.
+     *
+     * @return True if the group was written to the log.
+     */
+    private boolean logRecord(byte type, int[] values, int count) throws IOException {
+        int bytes = RECORD_OVERHEAD + Integer.BYTES * count;
+        if (pending.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            pending.flip();
+            pending = grown.put(pending);
+        }
+        int start = pending.position();
+        pending.put(type).putInt(count);
+        for (int k = 0; k < count; k++) {
+            pending.putInt(values[k]);
+        }
+        crc.reset();
+        crc.update(pending.array(), start, pending.position() - start);
+        pending.putInt((int) crc.getValue());
+
+        if (pendingRecords++ == 0) {
+            firstPendingNanos = System.nanoTime();
+        }
+        if (pendingRecords < groupCommitRecords
+                && (maxCommitDelayNanos == 0 || System.nanoTime() - firstPendingNanos < maxCommitDelayNanos)) {
+            if (pendingRecords == 1 && maxCommitDelayNanos > 0) {
+                flusher.schedule(this::flushLateGroup, maxCommitDelayNanos, TimeUnit.NANOSECONDS);
+            }
+            return false;
+        }
+        try {
+            writePending();
+        } catch (IOException e) {
+            pending.position(start);
+            pendingRecords--;
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Makes a checkpoint when a group was just written and the log is larger than the checkpoint size.
+     */
+    private void checkpointIfLogIsLarge(boolean written) throws IOException {
+        if (written && log.size() >= checkpointLogBytes) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Writes the pending records to the log and forces them to disk, makes a checkpoint when the log
+     * is larger than the checkpoint size.
+     *
+     * @throws IOException If the log cannot be written.
+     */
+    public synchronized void sync() throws IOException {
+        writePending();
+        checkpointIfLogIsLarge(true);
+    }
+
+    /**
+     * Writes the pending records to the log and forces them to disk. If writing fails, the log is cut
+     * back to where the group started and the records stay pending.
+     */
+    private void writePending() throws IOException {
+        if (pendingRecords == 0) {
+            return;
+        }
+        long groupStart = log.position();
+        pending.flip();
+        try {
+            while (pending.hasRemaining()) {
+                log.write(pending);
+            }
+            log.force(false);
+        } catch (IOException e) {
+            int end = pending.limit();
+            pending.limit(pending.capacity()).position(end);
+            try {
+                log.truncate(groupStart);
+                log.position(groupStart);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        pending.clear();
+        pendingRecords = 0;
+    }
+
+    /**
+     * Forces the entries of the directory to disk, so a rename and new files survive a crash. Windows
+     * cannot open a directory, there the rename is left to the file system.
+     */
+    private void forceDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            if (!System.getProperty("os.name").startsWith("Windows")) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Saves the table as the snapshot of a new generation and starts its empty log, then deletes the
+     * files of the previous generation.
+     *
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public synchronized void checkpoint() throws IOException {
+        writePending();
+
+        long next = generation + 1;
+        Path temporary = directory.resolve(SNAPSHOT_PREFIX + next + SNAPSHOT_SUFFIX + ".tmp");
+        table.save(temporary);
+        try (FileChannel snapshot = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            snapshot.force(true);
+        }
+        FileChannel nextLog = FileChannel.open(logFile(next), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // from the rename on, the new generation is the one recovered
+        Files.move(temporary, snapshotFile(next), StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+
+        log.close();
+        log = nextLog;
+        generation = next;
+        deleteOlderGenerations();
+    }
+
+    /**
+     * Forces the pending records to disk, stops the background thread and closes the log.
+     *
+     * @throws IOException If the log cannot be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            if (flusher != null) {
+                flusher.shutdownNow();
+            }
+            log.close();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package cormack;
+
+/**
+ * Immutable copy of a table made by {@link CormackHashing#freeze()}, for lookups only. Every directory record
+ * is packed into one long and the buckets are stored one after another in an int array without the -1 slots
+ * left behind by moved buckets, so a lookup reads one long and one int. A bucket split by the search limits
+ * keeps its second-level directory, see {@link CormackHashing#setSearchLimits(long, double)}. All fields are final and never
+ * change, so the table can be shared by threads without synchronization.
+ */
+public final class FrozenCormackHashing {
+    private final PrimaryHashFamily primaryHash;
+    private final SecondaryHashFamily secondaryHash;
+    /** p in the upper 32 bits, then r and i in the lowest iBits bits, 0 for a free position */
+    private final long[] directory;
+    private final int[] primaryFile;
+    private final int iBits;
+    private final int iMask;
+    private final int size;
+    /** bit of i set for split buckets, the rest of i is the number of the second-level directory, 0 without splits */
+    private final int splitFlag;
+    private final int[] splitStart;
+    private final int[] splitRecords;
+
+    FrozenCormackHashing(PrimaryHashFamily primaryHash, SecondaryHashFamily secondaryHash, long[] directory,
+                         int[] primaryFile, int iBits, int size, int splitFlag, int[] splitStart, int[] splitRecords) {
+        this.primaryHash = primaryHash;
+        this.secondaryHash = secondaryHash;
+        this.directory = directory;
+        this.primaryFile = primaryFile;
+        this.iBits = iBits;
+        this.iMask = (1 << iBits) - 1;
+        this.size = size;
+        this.splitFlag = splitFlag;
+        this.splitStart = splitStart;
+        this.splitRecords = splitRecords;
+    }
+
+    /**
+     * Packs a directory record, r must fit into 32 - iBits bits.
+     */
+    static long pack(int i, int r, int p, int iBits) {
+        return ((long) p << 32) | ((long) r << iBits) | i;
+    }
+
+    /**
+     * Finds the position of a value in the primary file of the frozen table.
+     *
+     * @param value Value to look for.
+     * @return Position of the value, -1 if the value is not stored.
+     */
+    public int get(int value) {
+        long record = directory[primaryHash.position(value, directory.length)];
+        int r = (int) record >>> iBits;
+        if (r == 0 || value == -1) {
+            return -1;
+        }
+        int i = (int) record & iMask;
+        int slot;
+        if ((i & splitFlag) == 0) {
+            slot = secondaryHash.hash(value, i, r);
+        } else {
+            slot = SplitDirectories.slot(splitRecords, splitStart[i ^ splitFlag], value, secondaryHash);
+            if (slot == -1) {
+                return -1;
+            }
+        }
+        int position = (int) (record >>> 32) + slot;
+        return primaryFile[position] == value ? position : -1;
+    }
+
+    /**
+     * Checks if a value is stored.
+     *
+     * @param value Value to look for.
+     * @return True if the value is stored, false otherwise.
+     */
+    public boolean contains(int value) {
+        return get(value) > -1;
+    }
+
+    /**
+     * Retrieves the number of stored values.
+     *
+     * @return Number of values.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the size of the directory.
+     *
+     * @return Number of directory positions.
+     */
+    public int getDirectorySize() {
+        return directory.length;
+    }
+
+    /**
+     * Retrieves the size of the primary file, the slots of all buckets.
+     *
+     * @return Size of the primary file.
+     */
+    public int getPrimaryFileSize() {
+        return primaryFile.length;
+    }
+
+    /**
+     * Computes the heap memory taken by the directory, primary file and second-level directory arrays.
+     *
+     * @return Number of bytes taken by the arrays.
+     */
+    public long memoryFootprint() {
+        return (long) Long.BYTES * directory.length
+                + (long) Integer.BYTES * (primaryFile.length + splitStart.length + splitRecords.length);
+    }
+}
@@ -1,16 +1,23 @@
+package cormack;
+
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Graphical User Interface for step-by-step Cormack Hashing method.
  */
 public class Gui extends JFrame {
+    private static final int MAX_SHOWN_CANDIDATES = 10;
+
     private CormackHashing cormackHashing;
-    private JTextArea textArea;
+    private DirectoryTableModel directoryModel;
+    private PrimaryFileTableModel primaryFileModel;
+    private JTable directoryTable;
+    private JTable primaryFileTable;
     private JTextField valueField;
     private JButton insertButton;
 
@@ -18,7 +25,8 @@ public class Gui extends JFrame {
     private CardLayout cardLayout;
     private int stepNumber = 0;
     private JTextArea stepsTextArea;
-    private boolean directoryIsFree;
+    /** steps of the last insert, the rows changed by it and the explanation are taken from it */
+    private final InsertionTrace trace = new InsertionTrace();
 
     /**
      * Constructs the GUI and initializes it with CormackHashing.
@@ -27,9 +35,10 @@ public class Gui extends JFrame {
         int directorySize = askForDirectorySize();
 
         cormackHashing = new CormackHashing(directorySize);
+        cormackHashing.setInsertionListener(trace);
 
         setTitle("Cormack Hashing");
-        setSize(600, 400);
+        setSize(700, 450);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
         initUI();
@@ -59,9 +68,18 @@ public class Gui extends JFrame {
     private void initUI() {
         JPanel mainPanel = new JPanel(new BorderLayout());
 
-        textArea = new JTextArea();
-        textArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(textArea);
+        directoryModel = new DirectoryTableModel(cormackHashing);
+        directoryTable = new JTable(directoryModel);
+        JScrollPane directoryScrollPane = new JScrollPane(directoryTable);
+        directoryScrollPane.setBorder(BorderFactory.createTitledBorder("Directory"));
+
+        primaryFileModel = new PrimaryFileTableModel(cormackHashing);
+        primaryFileTable = new JTable(primaryFileModel);
+        JScrollPane primaryFileScrollPane = new JScrollPane(primaryFileTable);
+        primaryFileScrollPane.setBorder(BorderFactory.createTitledBorder("Primary file"));
+
+        JSplitPane tablesPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, directoryScrollPane, primaryFileScrollPane);
+        tablesPane.setResizeWeight(0.5);
 
         valueField = new JTextField(7);
         insertButton = new JButton("Insert Value");
@@ -82,8 +100,7 @@ public class Gui extends JFrame {
 
         infoButton.addActionListener(e -> showInfoWindow());
 
-        mainPanel.add(scrollPane, BorderLayout.CENTER);
-        updateTextArea();
+        mainPanel.add(tablesPane, BorderLayout.CENTER);
 
         JPanel inputPanel = new JPanel(new FlowLayout());
         inputPanel.add(new JLabel("Insert value from 0 to 100000: "));
@@ -103,10 +120,25 @@ public class Gui extends JFrame {
     }
 
     /**
-     * Updates the main text area with the current state of cormackHashing.
+     * Shows the inserted value in the tables at the end of the walkthrough, only the rows changed by
+     * the insert are repainted.
      */
-    private void updateTextArea() {
-        textArea.setText(cormackHashing.getCurrentState());
+    private void showInsertedValue() {
+        releaseRows();
+        if (trace.rebuilt || cormackHashing.getDirectorySize() != directoryModel.getRowCount()) {
+            // the table was rebuilt, compacted or grown, every row may have changed
+            directoryModel.refresh();
+            primaryFileModel.refresh();
+            return;
+        }
+
+        directoryModel.positionChanged(trace.position);
+        primaryFileModel.keysChanged(trace.oldP, trace.oldP + trace.oldR);
+        primaryFileModel.keysChanged(trace.p, trace.p + trace.r);
+        primaryFileModel.sizeChanged();
+
+        directoryTable.scrollRectToVisible(directoryTable.getCellRect(trace.position, 0, true));
+        primaryFileTable.scrollRectToVisible(primaryFileTable.getCellRect(trace.p, 0, true));
     }
 
     /**
@@ -114,12 +146,7 @@ public class Gui extends JFrame {
      */
     private void handleInsert() {
         if (catchBadInserts()) {
-            directoryIsFree = cormackHashing.directoryIsFreeForValue(getEnteredValue());
-            if (insertValue()) {
-                initializeRightPanel();
-                createStepsPanelAndShowFirstStep();
-                disableInputAndInsertButton();
-            }
+            insertValue(getEnteredValue());
         }
     }
 
@@ -144,9 +171,10 @@ public class Gui extends JFrame {
 
     /**
      * Creates a panel for displaying steps and shows the first step.
+     *
+     * @param value Inserted value.
      */
-    private void createStepsPanelAndShowFirstStep() {
-        int value = Integer.parseInt(valueField.getText());
+    private void createStepsPanelAndShowFirstStep(int value) {
         JPanel stepsPanel = new JPanel(new BorderLayout());
 
         JLabel step0Label = new JLabel("Inserting " + value);
@@ -177,8 +205,8 @@ public class Gui extends JFrame {
         stepNumber += 1;
 
         if (stepNumber == 1) {
-            stepsTextArea = new JTextArea("k = " + valueForInserting + ", s = 7\n" +
-                    "h(k,s) = k mod s = " + cormackHashing.primaryHashFunction(valueForInserting) + "\n");
+            stepsTextArea = new JTextArea("k = " + valueForInserting + ", s = " + trace.directorySize + "\n" +
+                    "h(k,s) = k mod s = " + trace.position + "\n");
             stepsTextArea.setEditable(false);
 
             JScrollPane scrollPane = new JScrollPane(stepsTextArea);
@@ -191,17 +219,17 @@ public class Gui extends JFrame {
             return;
         }
 
-        if (stepNumber == 2 && directoryIsFree) {
+        if (stepNumber == 2 && trace.positionWasFree()) {
             stepsTextArea.setLineWrap(true);
-            textArea.setWrapStyleWord(true);
-            stepsTextArea.append("\nPosition " + cormackHashing.primaryHashFunction(valueForInserting)
+            stepsTextArea.setWrapStyleWord(true);
+            stepsTextArea.append("\nPosition " + trace.position
                     + " is free in the Directory. We can add the value " + valueForInserting + ".");
             nextButton.setText("Add");
             return;
         }
 
-        if (stepNumber == 3 && directoryIsFree) {
-            updateTextArea();
+        if (stepNumber == 3 && trace.positionWasFree()) {
+            showInsertedValue();
             nextButton.setEnabled(false);
             enableInputAndInsertButton();
             stepNumber = 0;
@@ -209,25 +237,29 @@ public class Gui extends JFrame {
         }
 
         if (stepNumber == 2) {
-            stepsTextArea.append("\nPosition " + cormackHashing.primaryHashFunction(valueForInserting)
+            stepsTextArea.append("\nPosition " + trace.position
                     + " is NOT free in the\nDirectory. We have to\nreorder the colliding values.");
         }
 
         if (stepNumber == 3) {
-            int position = cormackHashing.primaryHashFunction(valueForInserting);
-            List<Integer> values = cormackHashing.getValuesForReinsertingWithInsertedValue(position);
-            int[] IRTuple = cormackHashing.getIAndRFromNthDirectoryRecord(position);
-
             stepsTextArea.append("\n\n");
-            for (Integer value : values) {
-                if (value == -1) {
-                    continue;
-                }
-                stepsTextArea.append("(" + value + " >> " + IRTuple[0] + ") mod " + IRTuple[1] + " = " +
-                        cormackHashing.secondaryHashFunction(value, IRTuple[0], IRTuple[1]) + "\n");
+            // only the last tried pairs, a large bucket can try hundreds of them
+            int first = Math.max(0, trace.candidates - MAX_SHOWN_CANDIDATES);
+            if (first > 0) {
+                stepsTextArea.append(first + " pairs collide\n");
+            }
+            for (int k = first; k < trace.candidates; k++) {
+                stepsTextArea.append("i = " + trace.candidateI[k] + ", r = " + trace.candidateR[k]
+                        + (k < trace.candidates - 1 ? " collides\n" : " places all values\n"));
+            }
+
+            stepsTextArea.append("\n");
+            for (int k = 0; k < trace.placed; k++) {
+                stepsTextArea.append("(" + trace.placedValues[k] + " >> " + trace.i + ") mod " + trace.r + " = " +
+                        (trace.placedKeys[k] - trace.p) + "\n");
             }
 
-            stepsTextArea.append("\ni = " + IRTuple[0] + ", r = " + IRTuple[1]);
+            stepsTextArea.append("\ni = " + trace.i + ", r = " + trace.r);
         }
 
         if (stepNumber == 4) {
@@ -238,7 +270,7 @@ public class Gui extends JFrame {
         }
 
         if (stepNumber == 5) {
-            updateTextArea();
+            showInsertedValue();
             nextButton.setEnabled(false);
             enableInputAndInsertButton();
             stepNumber = 0;
@@ -268,20 +300,57 @@ public class Gui extends JFrame {
     }
 
     /**
-     * Attempts to insert the value into CormackHashing, handles duplicate exception.
+     * Stops showing the rows held from before the insert.
+     */
+    private void releaseRows() {
+        directoryModel.release();
+        primaryFileModel.release();
+    }
+
+    /**
+     * Inserts the value into CormackHashing off the Event Dispatch Thread, the tables do not read the structure
+     * until the insert is done. Then shows the panel with steps, or the duplicate exception. The directory record
+     * and the keys of the bucket of the value show their values from before the insert until the last step,
+     * new keys are added to the table only then. A rebuild or growth of the table changes other rows as well,
+     * those show the new structure as soon as they are painted.
      *
-     * @return True if the insert was successful, false otherwise.
+     * @param value Value to insert.
      */
-    private boolean insertValue() {
-        try {
-            int value = Integer.parseInt(valueField.getText());
-            cormackHashing.insert(value);
-            return true;
-        } catch (DuplicateValueException ex) {
-            JOptionPane.showMessageDialog(null, ex.getMessage());
-            valueField.setText("");
-            return false;
-        }
+    private void insertValue(int value) {
+        disableInputAndInsertButton();
+        int position = cormackHashing.primaryHashFunction(value);
+        int p = cormackHashing.getPFromNthDirectoryRecord(position);
+        directoryModel.hold(position);
+        primaryFileModel.hold(p, p + cormackHashing.getIAndRFromNthDirectoryRecord(position)[1]);
+        directoryModel.setUpdating(true);
+        primaryFileModel.setUpdating(true);
+
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws DuplicateValueException {
+                cormackHashing.insert(value);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                directoryModel.setUpdating(false);
+                primaryFileModel.setUpdating(false);
+                try {
+                    get();
+                    initializeRightPanel();
+                    createStepsPanelAndShowFirstStep(value);
+                } catch (ExecutionException ex) {
+                    releaseRows();
+                    JOptionPane.showMessageDialog(null, ex.getCause().getMessage());
+                    enableInputAndInsertButton();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    releaseRows();
+                    enableInputAndInsertButton();
+                }
+            }
+        }.execute();
     }
 
     /**
@@ -0,0 +1,68 @@
+package cormack;
+
+/**
+ * Receives the steps of every {@link CormackHashing#insert(int)} while it is registered by
+ * {@link CormackHashing#setInsertionListener(InsertionListener)}. All arguments are primitives, so tracing
+ * does not allocate. The events of one insert come in this order: insertStarted, bucketTaken when the
+ * directory position is occupied, candidateTried for every (i, r) tested, bucketPlaced and valuePlaced for
+ * every value of the new bucket. Inserts into a free position try no candidates. Every method does nothing
+ * by default.
+ */
+public interface InsertionListener {
+
+    /**
+     * The value is inserted into a directory position.
+     *
+     * @param value         Inserted value.
+     * @param position      Directory position given by the primary hash function.
+     * @param directorySize Size s of the directory.
+     */
+    default void insertStarted(int value, int position, int directorySize) {
+    }
+
+    /**
+     * The values of the occupied position are taken out of their old slots p..p + r - 1.
+     *
+     * @param p      First slot of the old bucket.
+     * @param r      Number of slots of the old bucket.
+     * @param values Number of stored values taken out.
+     */
+    default void bucketTaken(int p, int r, int values) {
+    }
+
+    /**
+     * A secondary hash function was tested on the values of the bucket and the inserted value.
+     *
+     * @param i       Index of the secondary hash function.
+     * @param r       Number of slots.
+     * @param perfect True if the function places the values without collisions.
+     */
+    default void candidateTried(int i, int r, boolean perfect) {
+    }
+
+    /**
+     * The bucket is stored in the slots p..p + r - 1 with the secondary hash function i. A bucket split by
+     * the search limits has a negative i, its groups are tried as candidates one after another.
+     *
+     * @param i Index of the secondary hash function.
+     * @param r Number of slots.
+     * @param p First slot of the bucket.
+     */
+    default void bucketPlaced(int i, int r, int p) {
+    }
+
+    /**
+     * A value of the bucket is stored under a key of the primary file.
+     *
+     * @param value Stored value.
+     * @param key   Key (position) in the primary file.
+     */
+    default void valuePlaced(int value, int key) {
+    }
+
+    /**
+     * The insert compacted or rebuilt the table, so buckets other than the traced one moved as well.
+     */
+    default void tableRebuilt() {
+    }
+}
@@ -0,0 +1,91 @@
+package cormack;
+
+import java.util.Arrays;
+
+/**
+ * Listener which keeps the events of the last insert, the arrays are reused by the next insert.
+ */
+class InsertionTrace implements InsertionListener {
+    int value;
+    int position;
+    int directorySize;
+    /** old bucket, r = 0 when the position was free */
+    int oldP;
+    int oldR;
+    int takenValues;
+
+    int candidates;
+    int[] candidateI = new int[16];
+    int[] candidateR = new int[16];
+
+    int i;
+    int r;
+    int p;
+
+    int placed;
+    int[] placedValues = new int[16];
+    int[] placedKeys = new int[16];
+
+    boolean rebuilt;
+
+    @Override
+    public void insertStarted(int value, int position, int directorySize) {
+        this.value = value;
+        this.position = position;
+        this.directorySize = directorySize;
+        oldP = 0;
+        oldR = 0;
+        takenValues = 0;
+        candidates = 0;
+        placed = 0;
+        rebuilt = false;
+    }
+
+    @Override
+    public void bucketTaken(int p, int r, int values) {
+        oldP = p;
+        oldR = r;
+        takenValues = values;
+    }
+
+    @Override
+    public void candidateTried(int i, int r, boolean perfect) {
+        if (candidates == candidateI.length) {
+            candidateI = Arrays.copyOf(candidateI, 2 * candidates);
+            candidateR = Arrays.copyOf(candidateR, 2 * candidates);
+        }
+        candidateI[candidates] = i;
+        candidateR[candidates] = r;
+        candidates++;
+    }
+
+    @Override
+    public void bucketPlaced(int i, int r, int p) {
+        this.i = i;
+        this.r = r;
+        this.p = p;
+    }
+
+    @Override
+    public void valuePlaced(int value, int key) {
+        if (placed == placedValues.length) {
+            placedValues = Arrays.copyOf(placedValues, 2 * placed);
+            placedKeys = Arrays.copyOf(placedKeys, 2 * placed);
+        }
+        placedValues[placed] = value;
+        placedKeys[placed] = key;
+        placed++;
+    }
+
+    @Override
+    public void tableRebuilt() {
+        rebuilt = true;
+    }
+
+    /**
+     * @return True if the inserted value went into a free directory position.
+     */
+    boolean positionWasFree() {
+        return oldR == 0;
+    }
+}
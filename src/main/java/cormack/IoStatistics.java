@@ -0,0 +1,54 @@
+package cormack;
+
+/**
+ * Page counters of a primary file stored on disk. A page read or write is one I/O of a whole page,
+ * a hit is an access to a page which was already in the buffer pool and a miss an access which took
+ * a frame for the page, so hits and misses add up to all page accesses. A miss of a page never written
+ * to the file skips the read and fills the frame with -1, so page reads can be fewer than misses.
+ */
+public final class IoStatistics {
+    private final long pageReads;
+    private final long pageWrites;
+    private final long pageHits;
+    private final long pageMisses;
+
+    IoStatistics(long pageReads, long pageWrites, long pageHits, long pageMisses) {
+        this.pageReads = pageReads;
+        this.pageWrites = pageWrites;
+        this.pageHits = pageHits;
+        this.pageMisses = pageMisses;
+    }
+
+    public long getPageReads() {
+        return pageReads;
+    }
+
+    public long getPageWrites() {
+        return pageWrites;
+    }
+
+    public long getPageHits() {
+        return pageHits;
+    }
+
+    public long getPageMisses() {
+        return pageMisses;
+    }
+
+    /**
+     * Counts the page accesses done after an earlier snapshot.
+     *
+     * @param earlier Snapshot of the same primary file taken before this one.
+     * @return Difference of the counters.
+     */
+    public IoStatistics since(IoStatistics earlier) {
+        return new IoStatistics(pageReads - earlier.pageReads, pageWrites - earlier.pageWrites,
+                pageHits - earlier.pageHits, pageMisses - earlier.pageMisses);
+    }
+
+    @Override
+    public String toString() {
+        return "page reads " + pageReads + ", page writes " + pageWrites + ", page hits " + pageHits
+                + ", page misses " + pageMisses;
+    }
+}
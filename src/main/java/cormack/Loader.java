@@ -0,0 +1,287 @@
+package cormack;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Headless loader which streams decimal keys from a file or the standard input into a table. The input is
+ * read through one buffer and parsed in place, only one batch of keys is held in memory. Keys are separated
+ * by whitespace or commas, so one key per line and comma separated dumps both work. Duplicates are skipped
+ * and counted. Tokens which are not a storable int, like {@code 12-34} or {@code 7x}, are counted as invalid
+ * and the first MAX_REPORTED_INVALID of them are printed with their line.
+ */
+public class Loader {
+    private static final String USAGE = "Usage: load [--directory-size s] [--max-load l] [--batch n]"
+            + " [--report-seconds t] [file | -]";
+    /** number of invalid tokens printed, the rest is only counted */
+    private static final int MAX_REPORTED_INVALID = 10;
+    /** longer invalid tokens are printed cut off */
+    private static final int MAX_TOKEN_BYTES = 32;
+
+    private final CormackHashing cormackHashing;
+    private final int batchSize;
+    private final long reportNanos;
+    private final PrintStream out;
+    private final ByteBuffer buffer;
+
+    private final int[] batch;
+    private int batchCount;
+
+    private long keys;
+    private long inserted;
+    private long duplicates;
+    private long invalid;
+
+    /** beginning of the token being parsed and its line, for reporting it as invalid */
+    private final byte[] tokenBytes = new byte[MAX_TOKEN_BYTES];
+    private int tokenLength;
+    private long line = 1;
+
+    private long startNanos;
+    private long lastReportNanos;
+    private long keysAtLastReport;
+
+    /**
+     * Creates a loader into a table.
+     *
+     * @param cormackHashing Table to load into.
+     * @param batchSize      Number of keys inserted by one insertAll.
+     * @param reportSeconds  Seconds between progress lines, 0 for no progress lines.
+     * @param out            Stream for progress lines and the summary.
+     */
+    public Loader(CormackHashing cormackHashing, int batchSize, double reportSeconds, PrintStream out) {
+        this(cormackHashing, batchSize, reportSeconds, out, 1 << 16);
+    }
+
+    Loader(CormackHashing cormackHashing, int batchSize, double reportSeconds, PrintStream out, int bufferBytes) {
+        if (batchSize <= 0 || reportSeconds < 0) {
+            throw new IllegalArgumentException("Batch size must be positive and report interval not negative.");
+        }
+        this.cormackHashing = cormackHashing;
+        this.batchSize = batchSize;
+        this.reportNanos = (long) (reportSeconds * 1e9);
+        this.out = out;
+        this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+        this.batch = new int[batchSize];
+    }
+
+    /**
+     * Reads all keys from a channel and inserts them, then prints the summary.
+     *
+     * @param channel Channel with the keys, it is not closed.
+     * @throws IOException If reading fails, keys read before are inserted.
+     */
+    public void load(ReadableByteChannel channel) throws IOException {
+        startNanos = System.nanoTime();
+        lastReportNanos = startNanos;
+        line = 1;
+
+        // the token being parsed may continue in the next read
+        long token = 0;
+        boolean negative = false;
+        boolean valid = true;
+
+        try {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (b == ' ' || b == ',' || b == '\n' || b == '\r' || b == '\t' || b == '\f') {
+                        if (tokenLength > 0) {
+                            addToken(token, negative, valid);
+                            token = 0;
+                            negative = false;
+                            valid = true;
+                        }
+                        if (b == '\n') {
+                            line++;
+                        }
+                        continue;
+                    }
+                    if (b >= '0' && b <= '9') {
+                        // stop growing once out of int range, the token is invalid anyway
+                        if (token <= Integer.MAX_VALUE + 1L) {
+                            token = token * 10 + (b - '0');
+                        }
+                    } else if (b == '-' && tokenLength == 0) {
+                        negative = true;
+                    } else {
+                        valid = false;
+                    }
+                    if (tokenLength < MAX_TOKEN_BYTES) {
+                        tokenBytes[tokenLength] = b;
+                    }
+                    tokenLength++;
+                }
+                buffer.clear();
+            }
+            if (tokenLength > 0) {
+                addToken(token, negative, valid);
+            }
+        } finally {
+            flushBatch();
+        }
+        printSummary();
+    }
+
+    private void addToken(long token, boolean negative, boolean valid) {
+        keys++;
+        long key = negative ? -token : token;
+        boolean hasDigits = tokenLength > (negative ? 1 : 0);
+        int length = tokenLength;
+        tokenLength = 0;
+        if (!valid || !hasDigits || key < Integer.MIN_VALUE || key > Integer.MAX_VALUE || key == PrimaryFile.EMPTY) {
+            if (invalid++ < MAX_REPORTED_INVALID) {
+                String text = new String(tokenBytes, 0, Math.min(length, MAX_TOKEN_BYTES), StandardCharsets.ISO_8859_1);
+                out.printf("Invalid key \"%s%s\" on line %,d%n", text, length > MAX_TOKEN_BYTES ? "..." : "", line);
+            }
+            return;
+        }
+        batch[batchCount++] = (int) key;
+        if (batchCount == batchSize) {
+            flushBatch();
+        }
+    }
+
+    /**
+     * Inserts the collected keys and prints a progress line when the report interval has passed.
+     */
+    private void flushBatch() {
+        if (batchCount == 0) {
+            return;
+        }
+        int[] values = batchCount == batch.length ? batch : Arrays.copyOf(batch, batchCount);
+        try {
+            int count = cormackHashing.insertAll(values, DuplicatePolicy.SKIP);
+            inserted += count;
+            duplicates += batchCount - count;
+        } catch (DuplicateValueException ex) {
+            // not thrown with SKIP
+            throw new IllegalStateException(ex);
+        }
+        batchCount = 0;
+
+        long now = System.nanoTime();
+        if (reportNanos > 0 && now - lastReportNanos >= reportNanos) {
+            double seconds = (now - lastReportNanos) / 1e9;
+            out.printf("%,d keys, %,.0f keys/s, %s%n", keys, (keys - keysAtLastReport) / seconds, statistics());
+            lastReportNanos = now;
+            keysAtLastReport = keys;
+        }
+    }
+
+    private void printSummary() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        out.printf("Loaded %,d keys in %.2f s (%,.0f keys/s): %,d inserted, %,d duplicates, %,d invalid%n",
+                keys, seconds, keys / Math.max(seconds, 1e-9), inserted, duplicates, invalid);
+        out.println(statistics());
+    }
+
+    private String statistics() {
+        Runtime runtime = Runtime.getRuntime();
+        long usedMegabytes = (runtime.totalMemory() - runtime.freeMemory()) >> 20;
+        return String.format("size %,d, directory %,d, primary file %,d (%,d dead), table %,d MB, heap %,d MB",
+                cormackHashing.size(), cormackHashing.getDirectorySize(), cormackHashing.getPrimaryFileSize(),
+                cormackHashing.getDeadSlots(), cormackHashing.memoryFootprint() >> 20, usedMegabytes);
+    }
+
+    /**
+     * @return Number of keys read, including duplicates and invalid tokens.
+     */
+    public long getKeys() {
+        return keys;
+    }
+
+    /**
+     * @return Number of keys inserted into the table.
+     */
+    public long getInserted() {
+        return inserted;
+    }
+
+    /**
+     * @return Number of keys skipped because they were already stored.
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return Number of tokens which are not a storable int, including tokens which are not a number.
+     */
+    public long getInvalid() {
+        return invalid;
+    }
+
+    /**
+     * Runs the loader from the command line, reads the standard input when no file or "-" is given.
+     *
+     * @param args Options and the file with keys.
+     */
+    public static void main(String[] args) {
+        int directorySize = 1 << 16;
+        double maxLoad = 2;
+        int batchSize = 1 << 16;
+        double reportSeconds = 1;
+        String file = "-";
+
+        try {
+            for (int arg = 0; arg < args.length; arg++) {
+                switch (args[arg]) {
+                    case "--directory-size":
+                        directorySize = Integer.parseInt(optionValue(args, ++arg));
+                        break;
+                    case "--max-load":
+                        maxLoad = Double.parseDouble(optionValue(args, ++arg));
+                        break;
+                    case "--batch":
+                        batchSize = Integer.parseInt(optionValue(args, ++arg));
+                        break;
+                    case "--report-seconds":
+                        reportSeconds = Double.parseDouble(optionValue(args, ++arg));
+                        break;
+                    default:
+                        if (args[arg].startsWith("--") || arg != args.length - 1) {
+                            throw new IllegalArgumentException("Unknown option " + args[arg] + ".");
+                        }
+                        file = args[arg];
+                }
+            }
+
+            CormackHashing cormackHashing = new CormackHashing(directorySize);
+            cormackHashing.setDirectoryGrowth(maxLoad, 8);
+            cormackHashing.setCompactionThreshold(0.5);
+            cormackHashing.setMetricsEnabled(false);
+            Loader loader = new Loader(cormackHashing, batchSize, reportSeconds, System.out);
+
+            if (file.equals("-")) {
+                loader.load(Channels.newChannel(System.in));
+            } else {
+                try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+                    loader.load(channel);
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage() + "\n" + USAGE);
+            System.exit(2);
+        } catch (IOException ex) {
+            System.err.println("Loading failed: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static String optionValue(String[] args, int arg) {
+        if (arg >= args.length) {
+            throw new IllegalArgumentException("Missing value of " + args[arg - 1] + ".");
+        }
+        return args[arg];
+    }
+}
@@ -0,0 +1,69 @@
+package cormack;
+
+/**
+ * Histogram of non-negative longs in buckets of powers of two: bucket b counts values from 2^(b-1)
+ * to 2^b - 1, bucket 0 counts zeroes. Recording a value is one increment, nothing is allocated.
+ */
+public final class Log2Histogram {
+    private static final int BUCKETS = 65;
+
+    private final long[] counts;
+
+    public Log2Histogram() {
+        this.counts = new long[BUCKETS];
+    }
+
+    private Log2Histogram(long[] counts) {
+        this.counts = counts;
+    }
+
+    /**
+     * Counts a value, negative values are counted as zero.
+     */
+    public void record(long value) {
+        counts[64 - Long.numberOfLeadingZeros(Math.max(0, value))]++;
+    }
+
+    /**
+     * Retrieves the number of recorded values.
+     */
+    public long count() {
+        long count = 0;
+        for (long bucket : counts) {
+            count += bucket;
+        }
+        return count;
+    }
+
+    /**
+     * Estimates a quantile by the upper bound of the bucket which contains it.
+     *
+     * @param quantile Number between 0 and 1, 0.5 is the median.
+     * @return Upper bound of the bucket, 0 if nothing was recorded.
+     */
+    public long quantile(double quantile) {
+        long rank = (long) Math.ceil(quantile * count());
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank && counts[bucket] > 0) {
+                return bucket == 0 ? 0 : bucket == 64 ? Long.MAX_VALUE : (1L << bucket) - 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Retrieves the count of every bucket, the array is a copy.
+     */
+    public long[] counts() {
+        return counts.clone();
+    }
+
+    /**
+     * Copies the histogram.
+     */
+    public Log2Histogram copy() {
+        return new Log2Histogram(counts.clone());
+    }
+}
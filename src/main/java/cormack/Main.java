@@ -1,7 +1,19 @@
-import javax.swing.*;
+package cormack;
+
+import java.util.Arrays;
 
 public class Main {
+    /**
+     * Starts the GUI, or the headless loader when the first argument is "load".
+     *
+     * @param args Arguments, "load" followed by the options of {@link Loader#main(String[])}.
+     */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("load")) {
+            Loader.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         Gui gui = new Gui();
 
         // printTestExampleInTerminal();
@@ -19,10 +31,10 @@ public class Main {
             try {
                 cormack.insert(value);
             } catch (DuplicateValueException ex) {
-                JOptionPane.showMessageDialog(null, ex.getMessage());
+                System.err.println(ex.getMessage());
             }
         }
 
         cormack.printStructure();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,142 @@
+package cormack;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only table opened from a file written by {@link CormackHashing#save(Path)}. The file is mapped
+ * into memory and lookups read the directory record and the slot straight from the mapping, nothing
+ * is deserialized except the second-level directories of split buckets and the data stay in the page cache.
+ * Opening reads the directory once to check that every bucket lies in the file, the primary file is not read.
+ * Lookups can be done by several threads at once.
+ */
+public final class MappedCormackHashing {
+    /** files are mapped in segments of 1 GiB, a mapping cannot be larger than 2 GiB */
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int EMPTY = -1;
+
+    private final ByteBuffer[] segments;
+    private final PrimaryHashFamily primaryHash;
+    private final SecondaryHashFamily secondaryHash;
+    private final int directorySize;
+    private final int size;
+    private final long primaryFileOffset;
+    /** second-level directories of split buckets, read into the heap when the file is opened */
+    private final int[] splitRecords;
+
+    private MappedCormackHashing(ByteBuffer[] segments, ByteBuffer header) throws IOException {
+        this.segments = segments;
+        this.primaryHash = TableFormat.primaryHash(header);
+        this.secondaryHash = TableFormat.secondaryHash(header);
+        this.directorySize = header.getInt(TableFormat.DIRECTORY_SIZE_OFFSET);
+        this.size = header.getInt(TableFormat.SIZE_OFFSET);
+        this.primaryFileOffset = TableFormat.primaryFileOffset(directorySize);
+        this.splitRecords = new int[header.getInt(TableFormat.SPLITS_OFFSET)];
+        long splitsOffset = TableFormat.splitsOffset(directorySize, header.getInt(TableFormat.PRIMARY_FILE_SIZE_OFFSET));
+        for (int k = 0; k < splitRecords.length; k++) {
+            splitRecords[k] = readInt(splitsOffset + (long) Integer.BYTES * k);
+        }
+        int primaryFileSize = header.getInt(TableFormat.PRIMARY_FILE_SIZE_OFFSET);
+        for (int position = 0; position < directorySize; position++) {
+            long record = TableFormat.directoryOffset(position);
+            TableFormat.checkDirectoryRecord(position, readInt(record), readInt(record + Integer.BYTES),
+                    readInt(record + 2 * Integer.BYTES), primaryFileSize, splitRecords, splitRecords.length);
+        }
+    }
+
+    /**
+     * Maps a saved table into memory.
+     *
+     * @param file File written by {@link CormackHashing#save(Path)}.
+     * @return Table reading from the mapped file.
+     * @throws IOException If the file cannot be mapped, is not a saved table or a bucket lies outside of it.
+     */
+    public static MappedCormackHashing open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = TableFormat.readHeader(channel);
+            TableFormat.checkSizes(header);
+            long expectedSize = TableFormat.splitsOffset(header.getInt(TableFormat.DIRECTORY_SIZE_OFFSET),
+                    header.getInt(TableFormat.PRIMARY_FILE_SIZE_OFFSET))
+                    + (long) Integer.BYTES * header.getInt(TableFormat.SPLITS_OFFSET);
+            if (channel.size() < expectedSize) {
+                throw new IOException("File is too short for a Cormack hashing table.");
+            }
+
+            ByteBuffer[] segments = new ByteBuffer[(int) ((expectedSize + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int k = 0; k < segments.length; k++) {
+                long offset = (long) k << SEGMENT_SHIFT;
+                long length = Math.min(1L << SEGMENT_SHIFT, expectedSize - offset);
+                segments[k] = channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            // the mapping stays valid after the channel is closed
+            return new MappedCormackHashing(segments, header);
+        }
+    }
+
+    /**
+     * Reads an int at an offset of the file, ints never cross the boundary of a segment.
+     */
+    private int readInt(long offset) {
+        return segments[(int) (offset >>> SEGMENT_SHIFT)].getInt((int) (offset & SEGMENT_MASK));
+    }
+
+    /**
+     * Finds the position of a value in the primary file with one primary and one secondary hash.
+     *
+     * @param value Value to look for.
+     * @return Position (key) of the value in the primary file, -1 if the value is not stored.
+     */
+    public int get(int value) {
+        if (value == EMPTY) {
+            return -1;
+        }
+
+        long record = TableFormat.directoryOffset(primaryHash.position(value, directorySize));
+        int r = readInt(record + Integer.BYTES);
+        if (r == 0) {
+            return -1;
+        }
+        int i = readInt(record);
+        int p = readInt(record + 2 * Integer.BYTES);
+
+        int slot = i >= 0 ? secondaryHash.hash(value, i, r) : SplitDirectories.slot(splitRecords, -1 - i, value, secondaryHash);
+        if (slot == -1) {
+            return -1;
+        }
+        int position = p + slot;
+        return readInt(primaryFileOffset + (long) Integer.BYTES * position) == value ? position : -1;
+    }
+
+    /**
+     * Checks if a value is stored in the table.
+     *
+     * @param value Value to look for.
+     * @return True if the value is stored, false otherwise.
+     */
+    public boolean contains(int value) {
+        return get(value) > -1;
+    }
+
+    /**
+     * Retrieves the number of values stored in the table.
+     *
+     * @return Number of stored values.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the size of the directory.
+     *
+     * @return Number of directory positions.
+     */
+    public int getDirectorySize() {
+        return directorySize;
+    }
+}
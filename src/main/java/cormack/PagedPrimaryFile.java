@@ -0,0 +1,263 @@
+package cormack;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Primary file split into fixed-size pages of a file on disk. Only a bounded number of pages is held
+ * in memory, in the frames of a buffer pool, a page not in the pool is read into a frame chosen by the
+ * CLOCK algorithm: the hand passes over frames of recently used pages and takes the first frame whose
+ * page was not used since the hand passed it last time. A changed page is written back when its frame
+ * is taken or on {@link #flush()}.
+ */
+final class PagedPrimaryFile implements PrimaryFile {
+    private static final int NO_PAGE = -1;
+
+    private final FileChannel channel;
+    private final int pageBytes;
+    private final int slotsPerPage;
+
+    private final ByteBuffer[] frames;
+    /** page held by every frame, NO_PAGE for a free frame */
+    private final int[] pageOfFrame;
+    private final boolean[] dirty;
+    private final boolean[] referenced;
+    private int clockHand;
+    /** frame holding every page, NO_PAGE if the page is not in the pool */
+    private int[] frameOfPage = new int[16];
+
+    private int size;
+    /** pages below this one have been written to the file at least once */
+    private int pagesInFile;
+
+    private long pageReads;
+    private long pageWrites;
+    private long pageHits;
+    private long pageMisses;
+
+    private PagedPrimaryFile(FileChannel channel, int pageBytes, int bufferPoolPages) {
+        this.channel = channel;
+        this.pageBytes = pageBytes;
+        this.slotsPerPage = pageBytes / Integer.BYTES;
+        this.frames = new ByteBuffer[bufferPoolPages];
+        this.pageOfFrame = new int[bufferPoolPages];
+        this.dirty = new boolean[bufferPoolPages];
+        this.referenced = new boolean[bufferPoolPages];
+        Arrays.fill(pageOfFrame, NO_PAGE);
+        Arrays.fill(frameOfPage, NO_PAGE);
+    }
+
+    /**
+     * Creates an empty primary file, an existing file is overwritten.
+     *
+     * @param file File for the pages.
+     * @param pageBytes Size of one page, a multiple of 4 bytes.
+     * @param bufferPoolPages Number of pages held in memory.
+     * @return Empty primary file.
+     * @throws IOException If the file cannot be created.
+     */
+    static PagedPrimaryFile create(Path file, int pageBytes, int bufferPoolPages) throws IOException {
+        if (pageBytes < Integer.BYTES || pageBytes % Integer.BYTES != 0) {
+            throw new IllegalArgumentException("Page size must be a positive multiple of " + Integer.BYTES + " bytes.");
+        }
+        if (bufferPoolPages <= 0) {
+            throw new IllegalArgumentException("Buffer pool must hold at least one page.");
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new PagedPrimaryFile(channel, pageBytes, bufferPoolPages);
+    }
+
+    @Override
+    public int get(int position) {
+        return frames[frame(position / slotsPerPage)].getInt(Integer.BYTES * (position % slotsPerPage));
+    }
+
+    @Override
+    public void set(int position, int value) {
+        int frame = frame(position / slotsPerPage);
+        frames[frame].putInt(Integer.BYTES * (position % slotsPerPage), value);
+        dirty[frame] = true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Only the pages of the buffer pool are held in memory.
+     */
+    @Override
+    public int capacity() {
+        return frames.length * slotsPerPage;
+    }
+
+    /**
+     * Moves a bucket which fits into one page but would cross the end of a page to the next page,
+     * so that a lookup in the bucket reads one page.
+     */
+    @Override
+    public int alignedStart(int position, int count) {
+        int offset = position % slotsPerPage;
+        if (count <= slotsPerPage && offset + count > slotsPerPage) {
+            return position - offset + slotsPerPage;
+        }
+        return position;
+    }
+
+    @Override
+    public int append(int count) {
+        int first = alignedStart(size, count);
+        for (int position = size; position < first + count; position++) {
+            set(position, EMPTY);
+        }
+        size = first + count;
+        return first;
+    }
+
+    @Override
+    public void truncate(int newSize) {
+        size = newSize;
+    }
+
+    /**
+     * Cuts off the pages after the end of the primary file, pages in the pool are dropped without writing.
+     */
+    @Override
+    public void trim() {
+        int pages = (size + slotsPerPage - 1) / slotsPerPage;
+        for (int frame = 0; frame < frames.length; frame++) {
+            if (pageOfFrame[frame] >= pages) {
+                frameOfPage[pageOfFrame[frame]] = NO_PAGE;
+                pageOfFrame[frame] = NO_PAGE;
+                dirty[frame] = false;
+            }
+        }
+        if (pagesInFile > pages) {
+            try {
+                channel.truncate((long) pageBytes * pages);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            pagesInFile = pages;
+        }
+    }
+
+    @Override
+    public IoStatistics statistics() {
+        return new IoStatistics(pageReads, pageWrites, pageHits, pageMisses);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        for (int frame = 0; frame < frames.length; frame++) {
+            if (dirty[frame]) {
+                writePage(frame);
+            }
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Finds the frame holding a page, reads the page into the pool if it is not there.
+     */
+    private int frame(int page) {
+        int frame = page < frameOfPage.length ? frameOfPage[page] : NO_PAGE;
+        if (frame != NO_PAGE) {
+            pageHits++;
+            referenced[frame] = true;
+            return frame;
+        }
+
+        pageMisses++;
+        try {
+            frame = freeFrame();
+            readPage(page, frame);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (page >= frameOfPage.length) {
+            int length = frameOfPage.length;
+            frameOfPage = Arrays.copyOf(frameOfPage, Math.max(page + 1, 2 * length));
+            Arrays.fill(frameOfPage, length, frameOfPage.length, NO_PAGE);
+        }
+        frameOfPage[page] = frame;
+        pageOfFrame[frame] = page;
+        referenced[frame] = true;
+        return frame;
+    }
+
+    /**
+     * Moves the clock hand to a free frame or to the first frame not referenced since the last pass,
+     * writes its page back if it changed and removes the page from the pool.
+     */
+    private int freeFrame() throws IOException {
+        while (true) {
+            int frame = clockHand;
+            clockHand = (clockHand + 1) % frames.length;
+            if (pageOfFrame[frame] == NO_PAGE) {
+                return frame;
+            }
+            if (referenced[frame]) {
+                referenced[frame] = false;
+                continue;
+            }
+            if (dirty[frame]) {
+                writePage(frame);
+            }
+            frameOfPage[pageOfFrame[frame]] = NO_PAGE;
+            pageOfFrame[frame] = NO_PAGE;
+            return frame;
+        }
+    }
+
+    /**
+     * Reads a page into a frame, a page which was never written is filled with -1 without reading.
+     */
+    private void readPage(int page, int frame) throws IOException {
+        if (frames[frame] == null) {
+            frames[frame] = ByteBuffer.allocateDirect(pageBytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        ByteBuffer buffer = frames[frame];
+        buffer.clear();
+        if (page < pagesInFile) {
+            long offset = (long) pageBytes * page;
+            while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+                // read the rest of the page
+            }
+            pageReads++;
+        }
+        while (buffer.hasRemaining()) {
+            buffer.putInt(EMPTY);
+        }
+        dirty[frame] = false;
+    }
+
+    private void writePage(int frame) throws IOException {
+        ByteBuffer buffer = frames[frame];
+        buffer.clear();
+        long offset = (long) pageBytes * pageOfFrame[frame];
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+        pageWrites++;
+        pagesInFile = Math.max(pagesInFile, pageOfFrame[frame] + 1);
+        dirty[frame] = false;
+    }
+}
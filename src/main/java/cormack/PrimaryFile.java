@@ -0,0 +1,77 @@
+package cormack;
+
+import java.io.IOException;
+
+/**
+ * Storage of the primary file, the key of a record is its position. Empty slots hold -1.
+ */
+interface PrimaryFile {
+    /** Value of an empty slot. */
+    int EMPTY = -1;
+
+    int get(int position);
+
+    void set(int position, int value);
+
+    int size();
+
+    /**
+     * Retrieves the number of slots held in memory.
+     */
+    int capacity();
+
+    /**
+     * Finds the first position at or after the given one where a bucket of count slots can start.
+     * The paged primary file keeps a bucket which fits into one page inside one page.
+     *
+     * @param position Smallest position for the bucket.
+     * @param count Number of slots of the bucket.
+     * @return Start of the bucket.
+     */
+    int alignedStart(int position, int count);
+
+    /**
+     * Appends empty slots to the end of the primary file, starting at {@link #alignedStart(int, int)}.
+     * Slots skipped for the alignment are empty as well.
+     *
+     * @param count Number of slots to append.
+     * @return Position of the first appended slot.
+     */
+    int append(int count);
+
+    /**
+     * Cuts off the end of the primary file, the storage keeps its capacity.
+     */
+    void truncate(int newSize);
+
+    /**
+     * Releases storage which is not needed for the current size.
+     */
+    void trim();
+
+    /**
+     * Tells if several threads may read the primary file at once while nobody writes it.
+     */
+    default boolean supportsConcurrentReads() {
+        return false;
+    }
+
+    /**
+     * Retrieves the page counters, a primary file in memory reads and writes no pages.
+     */
+    default IoStatistics statistics() {
+        return new IoStatistics(0, 0, 0, 0);
+    }
+
+    /**
+     * Writes all changed data to the storage.
+     */
+    default void flush() throws IOException {
+    }
+
+    /**
+     * Flushes the primary file and releases the storage.
+     */
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,130 @@
+package cormack;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model showing the keys and values of the primary file, the cells are read from the table only when
+ * the JTable paints them. The row count is cached and changed only by the update methods, so rows appended
+ * by an insert fire one insert event instead of a repaint of the whole file.
+ */
+class PrimaryFileTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"Key", "Value"};
+
+    private final CormackHashing cormackHashing;
+    private int rowCount;
+    /** the table is changed by a background thread, the cells must not be read */
+    private boolean updating;
+    /** values of the keys changed by the insert being walked through, as they were before the insert */
+    private int heldFrom;
+    private int[] heldValues = new int[0];
+
+    PrimaryFileTableModel(CormackHashing cormackHashing) {
+        this.cormackHashing = cormackHashing;
+        this.rowCount = cormackHashing.getPrimaryFileSize();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return Integer.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (updating) {
+            return null;
+        }
+        if (column == 0) {
+            return row;
+        }
+        if (row >= heldFrom && row < heldFrom + heldValues.length) {
+            return heldValues[row - heldFrom];
+        }
+        // the shown rows change only at the end of the walkthrough, a rebuilt file may be shorter until then
+        return row < cormackHashing.getPrimaryFileSize() ? cormackHashing.getPrimaryFileValue(row) : null;
+    }
+
+    /**
+     * Marks the table as being changed off the Event Dispatch Thread, no cell is read until it is unmarked.
+     *
+     * @param updating True while the table is changed.
+     */
+    void setUpdating(boolean updating) {
+        this.updating = updating;
+    }
+
+    /**
+     * Keeps showing the values of keys from..to - 1 as they are now, before an insert changes them,
+     * until {@link #release()}.
+     *
+     * @param from First key the insert changes.
+     * @param to   Key after the last key the insert changes.
+     */
+    void hold(int from, int to) {
+        heldFrom = from;
+        heldValues = new int[to - from];
+        for (int key = from; key < to; key++) {
+            heldValues[key - from] = cormackHashing.getPrimaryFileValue(key);
+        }
+    }
+
+    /**
+     * Shows the held keys as they are in the table again, the caller fires the change of their rows.
+     */
+    void release() {
+        heldValues = new int[0];
+    }
+
+    /**
+     * Repaints the keys from..to - 1 that are already shown, keys past the shown rows are added by
+     * {@link #sizeChanged()}.
+     *
+     * @param from First changed key.
+     * @param to   Key after the last changed key.
+     */
+    void keysChanged(int from, int to) {
+        to = Math.min(to, rowCount);
+        if (from < to) {
+            fireTableRowsUpdated(from, to - 1);
+        }
+    }
+
+    /**
+     * Adds the rows appended to the primary file or removes the rows truncated from it.
+     */
+    void sizeChanged() {
+        int size = cormackHashing.getPrimaryFileSize();
+        if (size > rowCount) {
+            int first = rowCount;
+            rowCount = size;
+            fireTableRowsInserted(first, size - 1);
+        } else if (size < rowCount) {
+            int first = size;
+            int last = rowCount - 1;
+            rowCount = size;
+            fireTableRowsDeleted(first, last);
+        }
+    }
+
+    /**
+     * Rereads the whole primary file, after it was compacted or rebuilt.
+     */
+    void refresh() {
+        rowCount = cormackHashing.getPrimaryFileSize();
+        fireTableDataChanged();
+    }
+}
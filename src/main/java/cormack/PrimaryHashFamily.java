@@ -0,0 +1,168 @@
+package cormack;
+
+/**
+ * Family of primary hash functions dividing values into the positions of the directory.
+ * Seeded families spread values with common low-order structure (e.g. multiples of
+ * the directory size) which all end up in one bucket with k mod s.
+ */
+public interface PrimaryHashFamily {
+
+    /**
+     * Computes the position of a value in the directory.
+     *
+     * @param key Value for hashing.
+     * @param directorySize Size of the directory.
+     * @return Position between 0 and directorySize - 1.
+     */
+    int position(int key, int directorySize);
+
+    /**
+     * Computes the position of a 64-bit key in the directory. By default the halves of the key are folded
+     * into one int, the families of this interface hash all 64 bits.
+     *
+     * @param key Key for hashing.
+     * @param directorySize Size of the directory.
+     * @return Position between 0 and directorySize - 1.
+     */
+    default int position(long key, int directorySize) {
+        return position((int) (key ^ (key >>> 32)), directorySize);
+    }
+
+    /**
+     * Retrieves the seed of the function.
+     *
+     * @return Seed, 0 for functions without a seed.
+     */
+    long seed();
+
+    /**
+     * Creates a function of the same family with another seed.
+     *
+     * @param seed New seed.
+     * @return Function with the new seed.
+     */
+    PrimaryHashFamily reseed(long seed);
+
+    /**
+     * h(k,s) = k mod s, the function from the lecture. Negative values are mapped
+     * to positions as well. It has no seed, reseeding turns it into {@link Mixing}.
+     */
+    static PrimaryHashFamily modulo() {
+        return Modulo.INSTANCE;
+    }
+
+    /**
+     * Multiply-shift hashing, the upper half of (a * k) for an odd 64-bit a given by the seed.
+     */
+    static PrimaryHashFamily multiplyShift(long seed) {
+        return new MultiplyShift(seed);
+    }
+
+    /**
+     * Value mixed with the seed by the finalizer of MurmurHash3.
+     */
+    static PrimaryHashFamily mixing(long seed) {
+        return new Mixing(seed);
+    }
+
+    /**
+     * Maps 32 uniformly distributed bits to a position, without division.
+     */
+    static int reduce(int hash, int directorySize) {
+        return (int) (((hash & 0xFFFFFFFFL) * directorySize) >>> 32);
+    }
+
+    final class Modulo implements PrimaryHashFamily {
+        static final Modulo INSTANCE = new Modulo();
+
+        private Modulo() {
+        }
+
+        @Override
+        public int position(int key, int directorySize) {
+            return Math.floorMod(key, directorySize);
+        }
+
+        @Override
+        public int position(long key, int directorySize) {
+            return (int) Math.floorMod(key, (long) directorySize);
+        }
+
+        @Override
+        public long seed() {
+            return 0;
+        }
+
+        @Override
+        public PrimaryHashFamily reseed(long seed) {
+            return new Mixing(seed);
+        }
+    }
+
+    final class MultiplyShift implements PrimaryHashFamily {
+        private final long seed;
+        private final long multiplier;
+
+        MultiplyShift(long seed) {
+            this.seed = seed;
+            this.multiplier = seed | 1;
+        }
+
+        @Override
+        public int position(int key, int directorySize) {
+            return reduce((int) ((multiplier * key) >>> 32), directorySize);
+        }
+
+        @Override
+        public int position(long key, int directorySize) {
+            return reduce((int) ((multiplier * key) >>> 32), directorySize);
+        }
+
+        @Override
+        public long seed() {
+            return seed;
+        }
+
+        @Override
+        public PrimaryHashFamily reseed(long seed) {
+            return new MultiplyShift(seed);
+        }
+    }
+
+    final class Mixing implements PrimaryHashFamily {
+        private final long seed;
+
+        Mixing(long seed) {
+            this.seed = seed;
+        }
+
+        @Override
+        public int position(int key, int directorySize) {
+            return reduce((int) (mix(key ^ seed) >>> 32), directorySize);
+        }
+
+        @Override
+        public int position(long key, int directorySize) {
+            return reduce((int) (mix(key ^ seed) >>> 32), directorySize);
+        }
+
+        @Override
+        public long seed() {
+            return seed;
+        }
+
+        @Override
+        public PrimaryHashFamily reseed(long seed) {
+            return new Mixing(seed);
+        }
+
+        static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
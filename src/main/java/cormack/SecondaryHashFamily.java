@@ -0,0 +1,157 @@
+package cormack;
+
+/**
+ * Family of secondary (locally perfect) hash functions h_i(k,r), indexed by i. For the values
+ * of one bucket the search tries i = 0, 1, ... for r slots and increases r when no function
+ * of the family places the values without collisions.
+ */
+public interface SecondaryHashFamily {
+
+    /**
+     * Computes the slot of a value within its bucket.
+     *
+     * @param key Value for hashing.
+     * @param i Index of the function in the family.
+     * @param r Number of slots of the bucket, greater than zero.
+     * @return Slot between 0 and r - 1.
+     */
+    int hash(int key, int i, int r);
+
+    /**
+     * Computes the slot of a 64-bit key within its bucket. By default the halves of the key are folded
+     * into one int, the families of this interface hash all 64 bits.
+     *
+     * @param key Key for hashing.
+     * @param i Index of the function in the family.
+     * @param r Number of slots of the bucket, greater than zero.
+     * @return Slot between 0 and r - 1.
+     */
+    default int hash(long key, int i, int r) {
+        return hash((int) (key ^ (key >>> 32)), i, r);
+    }
+
+    /**
+     * Retrieves the number of functions tried for one r before r is increased.
+     *
+     * @return Number of functions tried normally.
+     */
+    int functions();
+
+    /**
+     * Retrieves the number of different functions of the family, the minimal mode
+     * may try up to this many for one r.
+     *
+     * @return Number of different functions.
+     */
+    int distinctFunctions();
+
+    /**
+     * Tells if all values hashing to zero ends the search for the current r. This is true for the shift
+     * family from the lecture, where larger i only shifts the values further.
+     *
+     * @return True if the search continues with the next r when all values hash to zero.
+     */
+    default boolean allZeroesEndsSearch() {
+        return false;
+    }
+
+    /**
+     * Retrieves the seed of the family.
+     *
+     * @return Seed, 0 for families without a seed.
+     */
+    default long seed() {
+        return 0;
+    }
+
+    /**
+     * h_i(k,r) = (k >> i) mod r, the function from the lecture, k is taken as unsigned.
+     */
+    static SecondaryHashFamily shift() {
+        return Shift.INSTANCE;
+    }
+
+    /**
+     * Multiply-shift hashing with a different odd multiplier for every i, derived from the seed.
+     * It separates values that differ only in bits which the shift family cuts off.
+     *
+     * @param seed Seed of the multipliers.
+     * @param functions Number of functions tried for one r normally.
+     */
+    static SecondaryHashFamily multiplyShift(long seed, int functions) {
+        if (functions <= 0) {
+            throw new IllegalArgumentException("Number of functions must be positive.");
+        }
+        return new MultiplyShift(seed, functions);
+    }
+
+    final class Shift implements SecondaryHashFamily {
+        static final Shift INSTANCE = new Shift();
+
+        private Shift() {
+        }
+
+        @Override
+        public int hash(int key, int i, int r) {
+            return Integer.remainderUnsigned(key >>> i, r);
+        }
+
+        @Override
+        public int hash(long key, int i, int r) {
+            return (int) Long.remainderUnsigned(key >>> i, r);
+        }
+
+        @Override
+        public int functions() {
+            return Integer.SIZE;
+        }
+
+        @Override
+        public int distinctFunctions() {
+            // a shift by 32 is a shift by 0 again
+            return Integer.SIZE;
+        }
+
+        @Override
+        public boolean allZeroesEndsSearch() {
+            return true;
+        }
+    }
+
+    final class MultiplyShift implements SecondaryHashFamily {
+        private final long seed;
+        private final int functions;
+
+        MultiplyShift(long seed, int functions) {
+            this.seed = seed;
+            this.functions = functions;
+        }
+
+        @Override
+        public int hash(int key, int i, int r) {
+            long multiplier = PrimaryHashFamily.Mixing.mix(seed + i) | 1;
+            return PrimaryHashFamily.reduce((int) ((multiplier * key) >>> 32), r);
+        }
+
+        @Override
+        public int hash(long key, int i, int r) {
+            long multiplier = PrimaryHashFamily.Mixing.mix(seed + i) | 1;
+            return PrimaryHashFamily.reduce((int) ((multiplier * key) >>> 32), r);
+        }
+
+        @Override
+        public int functions() {
+            return functions;
+        }
+
+        @Override
+        public int distinctFunctions() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public long seed() {
+            return seed;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package cormack;
+
+import java.util.Arrays;
+
+/**
+ * Reused arrays for the search of i and r, so reordering a bucket does not allocate. Every thread
+ * searching at the same time needs its own instance.
+ */
+final class SecondarySearch {
+    /** results of testing one secondary hash function on the values of a bucket */
+    private static final int NOT_COLLIDING = 0;
+    private static final int COLLIDING = 1;
+    private static final int ALL_ZEROES = 2;
+
+    private final SecondaryHashFamily secondaryHash;
+    private int[] bucketValues = new int[16];
+    private int[] migratedValues = new int[16];
+    private int[] splitValues = new int[16];
+    private long[] migrationOrder = new long[16];
+    private long[] bucketKeys = new long[16];
+    private int[] stamps = new int[16];
+    private int stamp;
+    /** number of secondary functions tested and of searches going on with r + 1, for the metrics */
+    private long testedFunctions;
+    private long rIncrements;
+    /** receives every tested (i, r) of a traced insert, null otherwise */
+    private InsertionListener listener;
+
+    SecondarySearch(SecondaryHashFamily secondaryHash) {
+        this.secondaryHash = secondaryHash;
+    }
+
+    /**
+     * Searches for the smallest i for which the secondary hash function places values[from..to)
+     * into r slots without collisions.
+     *
+     * @param r Number of slots for the values.
+     * @param values Values to place, must not contain -1.
+     * @param functions Number of secondary functions to try.
+     * @return Found i, or -1 if no function of the first ones places the values or all values hash
+     *         to zero before a perfect i is found.
+     */
+    int hashValuesAreNotCollidingForR(int r, int[] values, int from, int to, int functions) {
+        int i = 0;
+
+        while (i < functions) {
+            int result = testSecondaryHashFunction(values, from, to, i, r);
+            if (listener != null) {
+                listener.candidateTried(i, r, result == NOT_COLLIDING);
+            }
+            if (result == ALL_ZEROES) {
+                return -1;
+            }
+
+            if (result == NOT_COLLIDING) {
+                return i;
+            }
+
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Searches for the smallest i for which the secondary hash function places 64-bit keys[0..count)
+     * into r slots without collisions, like {@link #hashValuesAreNotCollidingForR(int, int[], int, int, int)}.
+     *
+     * @return Found i, or -1 if no function of the first ones places the keys or all keys hash
+     *         to zero before a perfect i is found.
+     */
+    int keysAreNotCollidingForR(int r, long[] keys, int count, int functions) {
+        for (int i = 0; i < functions; i++) {
+            int result = testSecondaryHashFunction(keys, count, i, r);
+            if (result == ALL_ZEROES) {
+                return -1;
+            }
+            if (result == NOT_COLLIDING) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sets the listener of the tested functions, null to stop sending them.
+     */
+    void setListener(InsertionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Retrieves the number of secondary functions tested by this search.
+     */
+    long testedFunctions() {
+        return testedFunctions;
+    }
+
+    /**
+     * Counts a search going on with r + 1 because no i was found for r.
+     */
+    void countRIncrement() {
+        rIncrements++;
+    }
+
+    /**
+     * Retrieves the number of searches going on with r + 1.
+     */
+    long rIncrements() {
+        return rIncrements;
+    }
+
+    /**
+     * Adds the counts of a search used by another thread, like a task of a parallel build.
+     */
+    void addCounts(SecondarySearch other) {
+        testedFunctions += other.testedFunctions;
+        rIncrements += other.rIncrements;
+    }
+
+    /**
+     * Hashes the values with one secondary hash function and stops at the first collision.
+     * Slots are marked in a reused stamp array, so no memory is allocated.
+     *
+     * @return NOT_COLLIDING, COLLIDING or ALL_ZEROES when every value hashes to zero
+     *         and the family ends the search for r then.
+     */
+    private int testSecondaryHashFunction(int[] values, int from, int to, int i, int r) {
+        testedFunctions++;
+        int stamp = nextStamp(r);
+        boolean allZeroes = secondaryHash.allZeroesEndsSearch();
+        for (int k = from; k < to; k++) {
+            int hash = secondaryHash.hash(values[k], i, r);
+            if (hash != 0) {
+                allZeroes = false;
+            }
+
+            if (stamps[hash] == stamp) {
+                // all zeroes ends the search for this r, so the rest of the values still has to be checked
+                for (int m = k + 1; allZeroes && m < to; m++) {
+                    allZeroes = secondaryHash.hash(values[m], i, r) == 0;
+                }
+                return allZeroes ? ALL_ZEROES : COLLIDING;
+            }
+            stamps[hash] = stamp;
+        }
+
+        return allZeroes ? ALL_ZEROES : NOT_COLLIDING;
+    }
+
+    /**
+     * Hashes 64-bit keys with one secondary hash function and stops at the first collision.
+     */
+    private int testSecondaryHashFunction(long[] keys, int count, int i, int r) {
+        testedFunctions++;
+        int stamp = nextStamp(r);
+        boolean allZeroes = secondaryHash.allZeroesEndsSearch();
+        for (int k = 0; k < count; k++) {
+            int hash = secondaryHash.hash(keys[k], i, r);
+            if (hash != 0) {
+                allZeroes = false;
+            }
+
+            if (stamps[hash] == stamp) {
+                for (int m = k + 1; allZeroes && m < count; m++) {
+                    allZeroes = secondaryHash.hash(keys[m], i, r) == 0;
+                }
+                return allZeroes ? ALL_ZEROES : COLLIDING;
+            }
+            stamps[hash] = stamp;
+        }
+
+        return allZeroes ? ALL_ZEROES : NOT_COLLIDING;
+    }
+
+    /**
+     * Returns a new stamp for marking used slots, grows the stamp array to at least r slots.
+     */
+    private int nextStamp(int r) {
+        if (stamps.length < r) {
+            stamps = new int[Math.max(r, stamps.length * 2)];
+            stamp = 0;
+        }
+        if (++stamp == 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+        return stamp;
+    }
+
+    /**
+     * Returns the reused array for values of a bucket moved to the grown directory.
+     */
+    int[] migratedValues(int count) {
+        if (migratedValues.length < count) {
+            migratedValues = Arrays.copyOf(migratedValues, Math.max(count, migratedValues.length * 2));
+        }
+        return migratedValues;
+    }
+
+    /**
+     * Returns the reused array for the values of a split bucket sorted by their group.
+     */
+    int[] splitValues(int count) {
+        if (splitValues.length < count) {
+            splitValues = new int[Math.max(count, splitValues.length * 2)];
+        }
+        return splitValues;
+    }
+
+    /**
+     * Returns the reused array for sorting values of a bucket moved to the grown directory.
+     */
+    long[] migrationOrder(int count) {
+        if (migrationOrder.length < count) {
+            migrationOrder = new long[Math.max(count, migrationOrder.length * 2)];
+        }
+        return migrationOrder;
+    }
+
+    /**
+     * Returns the reused array for 64-bit keys of one bucket with space for at least count keys.
+     */
+    long[] bucketKeys(int count) {
+        if (bucketKeys.length < count) {
+            bucketKeys = new long[Math.max(count, bucketKeys.length * 2)];
+        }
+        return bucketKeys;
+    }
+
+    /**
+     * Returns the reused array for values of one bucket with space for at least count values.
+     */
+    int[] bucketValues(int count) {
+        if (bucketValues.length < count) {
+            bucketValues = new int[Math.max(count, bucketValues.length * 2)];
+        }
+        return bucketValues;
+    }
+}
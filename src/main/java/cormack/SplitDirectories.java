@@ -0,0 +1,81 @@
+package cormack;
+
+import java.util.Arrays;
+
+/**
+ * Second-level directories of buckets split because the search of i and r hit a limit. A split bucket
+ * keeps one range p..p + r - 1 of the primary file, its values are divided into groups by a seeded hash and
+ * every group is a small bucket with its own i, r and offset inside the range. The directory record of a
+ * split bucket has i = -1 - start, where start is the index of its second-level directory in one shared
+ * int array:
+ * <pre>
+ * groups, seed, then i, r and offset of every group
+ * </pre>
+ * A group without values has r = 0. Moving the range of the bucket, like compaction does, keeps the
+ * offsets valid.
+ */
+final class SplitDirectories {
+    static final int HEADER = 2;
+    static final int RECORD = 3;
+
+    int[] records = new int[16];
+    /** used length of the records array */
+    int size;
+    /** ints of released second-level directories, they are dropped by the next compaction */
+    int garbage;
+
+    /**
+     * Computes the group of a value in a split bucket.
+     */
+    static int group(int value, int seed, int groups) {
+        return PrimaryHashFamily.reduce((int) (PrimaryHashFamily.Mixing.mix(value ^ ((long) seed << 32)) >>> 32), groups);
+    }
+
+    /**
+     * Finds the slot of a value inside a split bucket.
+     *
+     * @param records Array with the second-level directory.
+     * @param start   Index of the second-level directory.
+     * @return Slot relative to p of the bucket, -1 if the group of the value is empty.
+     */
+    static int slot(int[] records, int start, int value, SecondaryHashFamily secondaryHash) {
+        int record = start + HEADER + RECORD * group(value, records[start + 1], records[start]);
+        int r = records[record + 1];
+        return r == 0 ? -1 : records[record + 2] + secondaryHash.hash(value, records[record], r);
+    }
+
+    /**
+     * Computes the number of ints of a second-level directory.
+     */
+    static int length(int[] records, int start) {
+        return HEADER + RECORD * records[start];
+    }
+
+    /**
+     * Reserves space for a second-level directory of a number of groups.
+     *
+     * @return Index of the second-level directory.
+     */
+    int allocate(int groups) {
+        int length = HEADER + RECORD * groups;
+        if (size + length > records.length) {
+            records = Arrays.copyOf(records, Math.max(size + length, 2 * records.length));
+        }
+        int start = size;
+        size += length;
+        records[start] = groups;
+        return start;
+    }
+
+    /**
+     * Marks the second-level directory of a bucket which is reordered or freed as unused.
+     */
+    void release(int start) {
+        garbage += length(records, start);
+    }
+
+    void clear() {
+        size = 0;
+        garbage = 0;
+    }
+}
@@ -0,0 +1,209 @@
+package cormack;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Binary file format of a table, all numbers are little-endian ints unless noted:
+ * <pre>
+ *  0  magic "CRMK"            24  number of values
+ *  4  version                 28  size of the primary file
+ *  8  primary hash type       32  primary hash seed (long)
+ * 12  secondary hash type     40  secondary hash seed (long)
+ * 16  secondary functions     48  length of second-level directories
+ * 20  directory size          52  reserved up to 64
+ * </pre>
+ * The header is followed by i, r and p of every directory position, by the values of the primary file and
+ * by the second-level directories of split buckets (see {@link SplitDirectories}). A split bucket has
+ * i = -1 - start of its second-level directory. Version 1 has no split buckets and 0 at offset 48.
+ */
+final class TableFormat {
+    static final int MAGIC = 0x4B4D5243;
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 64;
+    static final int DIRECTORY_RECORD_BYTES = 3 * Integer.BYTES;
+
+    static final int VERSION_OFFSET = 4;
+    static final int PRIMARY_HASH_OFFSET = 8;
+    static final int SECONDARY_HASH_OFFSET = 12;
+    static final int SECONDARY_FUNCTIONS_OFFSET = 16;
+    static final int DIRECTORY_SIZE_OFFSET = 20;
+    static final int SIZE_OFFSET = 24;
+    static final int PRIMARY_FILE_SIZE_OFFSET = 28;
+    static final int PRIMARY_SEED_OFFSET = 32;
+    static final int SECONDARY_SEED_OFFSET = 40;
+    static final int SPLITS_OFFSET = 48;
+
+    private static final int MODULO = 0;
+    private static final int MULTIPLY_SHIFT = 1;
+    private static final int MIXING = 2;
+    private static final int SHIFT = 0;
+
+    private TableFormat() {
+    }
+
+    /**
+     * Offset of the directory record of a position.
+     */
+    static long directoryOffset(int position) {
+        return HEADER_BYTES + (long) DIRECTORY_RECORD_BYTES * position;
+    }
+
+    /**
+     * Offset of the first value of the primary file.
+     */
+    static long primaryFileOffset(int directorySize) {
+        return directoryOffset(directorySize);
+    }
+
+    /**
+     * Offset of the first int of the second-level directories.
+     */
+    static long splitsOffset(int directorySize, int primaryFileSize) {
+        return primaryFileOffset(directorySize) + (long) Integer.BYTES * primaryFileSize;
+    }
+
+    /**
+     * Checks the sizes in a header read by {@link #readHeader(FileChannel)}.
+     *
+     * @throws IOException If the directory is empty or a size is negative.
+     */
+    static void checkSizes(ByteBuffer header) throws IOException {
+        if (header.getInt(DIRECTORY_SIZE_OFFSET) <= 0 || header.getInt(SIZE_OFFSET) < 0
+                || header.getInt(PRIMARY_FILE_SIZE_OFFSET) < 0 || header.getInt(SPLITS_OFFSET) < 0) {
+            throw new IOException("Header of the Cormack hashing table is not valid.");
+        }
+    }
+
+    /**
+     * Checks a directory record read from a file: the bucket lies in the primary file and the
+     * second-level directory of a split bucket lies in the split records.
+     *
+     * @param splitRecords Split records read from the file, only the first splitInts are used.
+     * @throws IOException If the record points outside of the file.
+     */
+    static void checkDirectoryRecord(int position, int i, int r, int p, int primaryFileSize,
+                                     int[] splitRecords, int splitInts) throws IOException {
+        if (r < 0 || r > 0 && (p < 0 || (long) p + r > primaryFileSize)) {
+            throw new IOException("Bucket " + position + " is outside of the primary file.");
+        }
+        if (i < 0 && !splitDirectoryIsValid(splitRecords, splitInts, -1 - i, r)) {
+            throw new IOException("Second-level directory of bucket " + position + " is not valid.");
+        }
+    }
+
+    /**
+     * Checks that a second-level directory lies in the records and its groups in the bucket.
+     */
+    private static boolean splitDirectoryIsValid(int[] records, int size, int start, int r) {
+        if ((long) start + SplitDirectories.HEADER > size || records[start] <= 0
+                || start + SplitDirectories.HEADER + (long) SplitDirectories.RECORD * records[start] > size) {
+            return false;
+        }
+        for (int g = 0; g < records[start]; g++) {
+            int record = start + SplitDirectories.HEADER + SplitDirectories.RECORD * g;
+            if (records[record + 1] < 0 || records[record + 2] < 0
+                    || (long) records[record + 2] + records[record + 1] > r) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the header into the buffer.
+     *
+     * @throws IllegalArgumentException If a hash function is not one of the built-in ones.
+     */
+    static void writeHeader(ByteBuffer buffer, PrimaryHashFamily primaryHash, SecondaryHashFamily secondaryHash,
+                            int directorySize, int size, int primaryFileSize, int splitInts) {
+        int start = buffer.position();
+        buffer.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(primaryHashType(primaryHash))
+                .putInt(secondaryHashType(secondaryHash))
+                .putInt(secondaryHash.functions())
+                .putInt(directorySize)
+                .putInt(size)
+                .putInt(primaryFileSize)
+                .putLong(primaryHash.seed())
+                .putLong(secondaryHash.seed())
+                .putInt(splitInts);
+        while (buffer.position() < start + HEADER_BYTES) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    /**
+     * Reads and checks the header at the beginning of the channel.
+     *
+     * @return Header of HEADER_BYTES in a little-endian buffer.
+     * @throws IOException If the file is not a table of a known version.
+     */
+    static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("File is too short for a Cormack hashing table.");
+            }
+        }
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("File is not a Cormack hashing table.");
+        }
+        if (header.getInt(VERSION_OFFSET) < 1 || header.getInt(VERSION_OFFSET) > VERSION) {
+            throw new IOException("Unsupported version " + header.getInt(VERSION_OFFSET) + " of Cormack hashing table.");
+        }
+        return header;
+    }
+
+    static PrimaryHashFamily primaryHash(ByteBuffer header) throws IOException {
+        long seed = header.getLong(PRIMARY_SEED_OFFSET);
+        switch (header.getInt(PRIMARY_HASH_OFFSET)) {
+            case MODULO:
+                return PrimaryHashFamily.modulo();
+            case MULTIPLY_SHIFT:
+                return PrimaryHashFamily.multiplyShift(seed);
+            case MIXING:
+                return PrimaryHashFamily.mixing(seed);
+            default:
+                throw new IOException("Unknown primary hash function " + header.getInt(PRIMARY_HASH_OFFSET) + ".");
+        }
+    }
+
+    static SecondaryHashFamily secondaryHash(ByteBuffer header) throws IOException {
+        switch (header.getInt(SECONDARY_HASH_OFFSET)) {
+            case SHIFT:
+                return SecondaryHashFamily.shift();
+            case MULTIPLY_SHIFT:
+                return SecondaryHashFamily.multiplyShift(header.getLong(SECONDARY_SEED_OFFSET),
+                        header.getInt(SECONDARY_FUNCTIONS_OFFSET));
+            default:
+                throw new IOException("Unknown secondary hash family " + header.getInt(SECONDARY_HASH_OFFSET) + ".");
+        }
+    }
+
+    private static int primaryHashType(PrimaryHashFamily primaryHash) {
+        if (primaryHash instanceof PrimaryHashFamily.Modulo) {
+            return MODULO;
+        }
+        if (primaryHash instanceof PrimaryHashFamily.MultiplyShift) {
+            return MULTIPLY_SHIFT;
+        }
+        if (primaryHash instanceof PrimaryHashFamily.Mixing) {
+            return MIXING;
+        }
+        throw new IllegalArgumentException("Only built-in primary hash functions can be saved.");
+    }
+
+    private static int secondaryHashType(SecondaryHashFamily secondaryHash) {
+        if (secondaryHash instanceof SecondaryHashFamily.Shift) {
+            return SHIFT;
+        }
+        if (secondaryHash instanceof SecondaryHashFamily.MultiplyShift) {
+            return MULTIPLY_SHIFT;
+        }
+        throw new IllegalArgumentException("Only built-in secondary hash families can be saved.");
+    }
+}
@@ -0,0 +1,119 @@
+package cormack;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentCormackHashingTest {
+
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int VALUES_PER_WRITER = 20000;
+
+    /**
+     * Value inserted by a writer as its k-th value, odd values are never inserted.
+     */
+    private static int value(int writer, int k) {
+        return 2 * (k * WRITERS + writer);
+    }
+
+    @Test
+    public void testLookupsDuringStripedInserts() throws Exception {
+        lookupsDuringInserts(new ConcurrentCormackHashing(2000));
+    }
+
+    @Test
+    public void testLookupsDuringInsertsUnderGlobalLock() throws Exception {
+        lookupsDuringInserts(new ConcurrentCormackHashing(2000, PrimaryHashFamily.modulo(), SecondaryHashFamily.shift(), 1));
+    }
+
+    private void lookupsDuringInserts(ConcurrentCormackHashing table) throws Exception {
+        // number of inserts every writer has finished, published after each insert
+        AtomicIntegerArray finished = new AtomicIntegerArray(WRITERS);
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int k = 0; k < VALUES_PER_WRITER; k++) {
+                    table.insert(value(writer, k));
+                    finished.set(writer, k + 1);
+                }
+                return null;
+            }));
+        }
+        for (int reader = 0; reader < READERS; reader++) {
+            int seed = reader;
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int[] seen = new int[WRITERS];
+                while (finished.get(seed % WRITERS) < VALUES_PER_WRITER) {
+                    int writer = random.nextInt(WRITERS);
+                    // an insert that finished before the lookup started must be visible
+                    int done = finished.get(writer);
+                    if (done > 0) {
+                        int k = random.nextInt(done);
+                        assertTrue(table.contains(value(writer, k)), "finished insert is not visible");
+                    }
+                    // a value seen once stays visible
+                    if (table.contains(value(writer, seen[writer]))) {
+                        seen[writer]++;
+                    }
+                    for (int k = 0; k < seen[writer]; k += 1 + seen[writer] / 8) {
+                        assertTrue(table.contains(value(writer, k)), "visible value disappeared");
+                    }
+                    assertFalse(table.contains(value(writer, random.nextInt(VALUES_PER_WRITER)) + 1));
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        executor.shutdown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+
+        assertEquals(WRITERS * VALUES_PER_WRITER, table.size());
+        for (int writer = 0; writer < WRITERS; writer++) {
+            for (int k = 0; k < VALUES_PER_WRITER; k++) {
+                assertTrue(table.contains(value(writer, k)));
+            }
+        }
+    }
+
+    @Test
+    public void testDeadSlotsAreCompacted() throws DuplicateValueException {
+        // every insert rewrites the one bucket, without compaction the slots would add up to millions
+        ConcurrentCormackHashing table = new ConcurrentCormackHashing(1, PrimaryHashFamily.modulo(),
+                SecondaryHashFamily.multiplyShift(7, 64), 1);
+        for (int value = 0; value < 3000; value++) {
+            table.insert(value);
+        }
+
+        assertTrue(table.getPrimaryFileSize() < 4 * (1 << 16));
+        for (int value = 0; value < 3000; value++) {
+            assertTrue(table.contains(value));
+        }
+        assertEquals(3000, table.size());
+    }
+
+    @Test
+    public void testDuplicate() throws DuplicateValueException {
+        ConcurrentCormackHashing table = new ConcurrentCormackHashing(7);
+        table.insert(14);
+        table.insert(21);
+        assertThrows(DuplicateValueException.class, () -> table.insert(14));
+        assertEquals(2, table.size());
+        assertEquals(-1, table.get(28));
+    }
+}
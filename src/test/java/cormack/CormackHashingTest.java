@@ -0,0 +1,625 @@
+package cormack;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CormackHashingTest {
+
+    private CormackHashing cormackHashing;
+
+    @BeforeEach
+    public void setUp() {
+        cormackHashing = new CormackHashing();
+    }
+
+    @Test
+    public void testDirectoryIsFreeForValue() {
+        // When the directory position is free
+        int freePositionValue = 14;
+        assertTrue(cormackHashing.directoryIsFreeForValue(freePositionValue));
+
+        // When the directory position is not free
+        int nonFreePositionValue = 42;
+        // Make the position in the directory non-free
+        try {
+            cormackHashing.insert(nonFreePositionValue);
+        } catch (DuplicateValueException e) {
+            fail("Unexpected DuplicateValueException during insertion.");
+        }
+        assertFalse(cormackHashing.directoryIsFreeForValue(nonFreePositionValue));
+    }
+
+    @Test
+    public void testContainsAndGet() throws DuplicateValueException {
+        int[] values = {14, 17, 10, 21, 28, 42};
+        for (int value : values) {
+            assertFalse(cormackHashing.contains(value));
+            cormackHashing.insert(value);
+        }
+
+        for (int value : values) {
+            assertTrue(cormackHashing.contains(value));
+            assertTrue(cormackHashing.getCurrentState().contains(" " + cormackHashing.get(value) + "  " + value + "\n"));
+        }
+        assertFalse(cormackHashing.contains(35));
+        assertEquals(-1, cormackHashing.get(3));
+    }
+
+    @Test
+    public void testInsertRejectsDuplicate() throws DuplicateValueException {
+        cormackHashing.insert(14);
+        cormackHashing.insert(21);
+        assertThrows(DuplicateValueException.class, () -> cormackHashing.insert(14));
+        assertThrows(DuplicateValueException.class, () -> cormackHashing.insert(21));
+    }
+
+    @Test
+    public void testSizeAndMemoryFootprint() throws DuplicateValueException {
+        int[] values = {14, 17, 10, 21, 28, 42};
+        for (int value : values) {
+            cormackHashing.insert(value);
+        }
+
+        assertEquals(values.length, cormackHashing.size());
+        // 7 directory records of three ints, primary file of at least the 16 initial slots
+        assertTrue(cormackHashing.memoryFootprint() >= 7 * 12 + 16 * 4);
+    }
+
+    @Test
+    public void testHashValuesAreNotCollidingForR() {
+        int[] values = {14, 21, 28, 42};
+        // (k >> 0) mod 4 = 2, 1, 0, 2 collides, (k >> 1) mod 4 = 3, 2, 2, 1 collides, ...
+        int i = cormackHashing.hashValuesAreNotCollidingForR(4, values, values.length);
+        assertEquals(-1, i);
+
+        i = cormackHashing.hashValuesAreNotCollidingForR(5, values, values.length);
+        assertTrue(i > -1);
+        boolean[] used = new boolean[5];
+        for (int value : values) {
+            int hash = cormackHashing.secondaryHashFunction(value, i, 5);
+            assertFalse(used[hash]);
+            used[hash] = true;
+        }
+    }
+
+    @Test
+    public void testBuild() throws DuplicateValueException {
+        int[] values = {421, 356, 169, 457, 748, 956, 187, 982, 307, 652, 306, 689, 537, 541, 697};
+        CormackHashing built = new CormackHashing.Builder().directorySize(7).build(values);
+
+        assertEquals(values.length, built.size());
+        int slots = 0;
+        for (int position = 0; position < 7; position++) {
+            slots += built.getIAndRFromNthDirectoryRecord(position)[1];
+        }
+        // buckets are stored one after another without -1 slots in between
+        assertEquals(slots, built.getPrimaryFileSize());
+        for (int value : values) {
+            assertTrue(built.contains(value));
+        }
+        assertFalse(built.contains(422));
+    }
+
+    @Test
+    public void testBuildRejectsDuplicate() {
+        assertThrows(DuplicateValueException.class, () -> CormackHashing.build(new int[]{14, 21, 10, 14}));
+    }
+
+    @Test
+    public void testInsertAfterBuild() throws DuplicateValueException {
+        CormackHashing built = CormackHashing.build(new int[]{14, 17, 10, 21});
+        built.insert(28);
+        built.insert(42);
+        for (int value : new int[]{14, 17, 10, 21, 28, 42}) {
+            assertTrue(built.contains(value));
+        }
+    }
+
+    @Test
+    public void testParallelBuildEqualsSequentialBuild() throws DuplicateValueException {
+        Random random = new Random(42);
+        int[] values = random.ints(0, 1000000).distinct().limit(5000).toArray();
+
+        CormackHashing sequential = new CormackHashing.Builder().directorySize(500).build(values);
+        CormackHashing parallel = new CormackHashing.Builder().directorySize(500).parallelism(4).build(values);
+
+        assertEquals(sequential.getCurrentState(), parallel.getCurrentState());
+    }
+
+    @Test
+    public void testParallelBuildRejectsDuplicate() {
+        int[] values = {14, 17, 10, 21, 28, 42, 10};
+        assertThrows(DuplicateValueException.class,
+                () -> new CormackHashing.Builder().directorySize(7).parallelism(3).build(values));
+    }
+
+    @Test
+    public void testCompact() throws DuplicateValueException {
+        int[] values = {14, 17, 10, 21, 28, 42, 3, 35, 49};
+        for (int value : values) {
+            cormackHashing.insert(value);
+        }
+        assertTrue(cormackHashing.getDeadSlots() > 0);
+
+        int slots = cormackHashing.getPrimaryFileSize() - cormackHashing.getDeadSlots();
+        cormackHashing.compact();
+
+        assertEquals(0, cormackHashing.getDeadSlots());
+        assertEquals(slots, cormackHashing.getPrimaryFileSize());
+        for (int value : values) {
+            assertTrue(cormackHashing.contains(value));
+        }
+
+        cormackHashing.insert(56);
+        assertTrue(cormackHashing.contains(56));
+        assertTrue(cormackHashing.contains(14));
+    }
+
+    @Test
+    public void testAutomaticCompaction() throws DuplicateValueException {
+        cormackHashing.setCompactionThreshold(0.25);
+        Random random = new Random(1);
+        for (int value : random.ints(0, 100000).distinct().limit(200).toArray()) {
+            cormackHashing.insert(value);
+            assertTrue(cormackHashing.getDeadSlots() <= 0.25 * cormackHashing.getPrimaryFileSize());
+        }
+        assertEquals(200, cormackHashing.size());
+    }
+
+    @Test
+    public void testDirectoryGrowth() throws DuplicateValueException {
+        cormackHashing.setDirectoryGrowth(2, 1);
+        cormackHashing.setCompactionThreshold(0.3);
+        int[] values = new Random(3).ints(0, 1000000).distinct().limit(2000).toArray();
+
+        for (int k = 0; k < values.length; k++) {
+            cormackHashing.insert(values[k]);
+            // lookups stay correct while buckets are being moved
+            if (k % 50 == 0) {
+                for (int m = 0; m <= k; m++) {
+                    assertTrue(cormackHashing.contains(values[m]));
+                }
+                assertFalse(cormackHashing.contains(1000001));
+            }
+        }
+
+        assertEquals(values.length, cormackHashing.size());
+        assertTrue(cormackHashing.getDirectorySize() >= values.length / 2);
+        assertThrows(DuplicateValueException.class, () -> cormackHashing.insert(values[0]));
+        cormackHashing.compact();
+        for (int value : values) {
+            assertTrue(cormackHashing.contains(value));
+        }
+    }
+
+    @Test
+    public void testNegativeValues() throws DuplicateValueException {
+        int[] values = {-14, -7, -1000000, Integer.MIN_VALUE, 7, Integer.MAX_VALUE, -21};
+        for (int value : values) {
+            cormackHashing.insert(value);
+        }
+        for (int value : values) {
+            assertTrue(cormackHashing.contains(value));
+        }
+        assertFalse(cormackHashing.contains(-1));
+        assertThrows(IllegalArgumentException.class, () -> cormackHashing.insert(-1));
+    }
+
+    @Test
+    public void testSeededPrimaryHashSpreadsMultiplesOfDirectorySize() throws DuplicateValueException {
+        for (PrimaryHashFamily primaryHash : new PrimaryHashFamily[]{
+                PrimaryHashFamily.multiplyShift(0x9E3779B97F4A7C15L), PrimaryHashFamily.mixing(42)}) {
+            CormackHashing seeded = new CormackHashing(7, primaryHash);
+            for (int value = 7; value <= 700; value += 7) {
+                seeded.insert(value);
+            }
+
+            int occupied = 0;
+            for (int position = 0; position < 7; position++) {
+                int r = seeded.getIAndRFromNthDirectoryRecord(position)[1];
+                occupied += r > 0 ? 1 : 0;
+            }
+            assertEquals(7, occupied);
+            for (int value = 7; value <= 700; value += 7) {
+                assertTrue(seeded.contains(value));
+            }
+        }
+    }
+
+    @Test
+    public void testReseedWhenBucketIsTooLarge() throws DuplicateValueException {
+        CormackHashing reseeded = new CormackHashing(16);
+        reseeded.setMaxBucketSize(8);
+        for (int value = 16; value <= 16 * 40; value += 16) {
+            reseeded.insert(value);
+        }
+
+        assertNotSame(PrimaryHashFamily.modulo(), reseeded.getPrimaryHash());
+        for (int value = 16; value <= 16 * 40; value += 16) {
+            assertTrue(reseeded.contains(value));
+            long bucketSize = reseeded.getValuesForReinsertingWithInsertedValue(value).stream().filter(v -> v != -1).count();
+            assertTrue(bucketSize <= 8);
+        }
+        assertEquals(40, reseeded.size());
+    }
+
+    @Test
+    public void testReseedGrowsDirectoryWhenNoSeedFits() throws DuplicateValueException {
+        // 2000 values cannot fit into 100 buckets of 3, the directory grows instead of rebuilding at every insert
+        CormackHashing reseeded = new CormackHashing(100);
+        reseeded.setMaxBucketSize(3);
+        int[] values = new Random(8).ints(0, Integer.MAX_VALUE).distinct().limit(2000).toArray();
+        for (int value : values) {
+            reseeded.insert(value);
+        }
+
+        assertTrue(reseeded.getDirectorySize() >= 2000 / 3);
+        for (int value : values) {
+            assertTrue(reseeded.contains(value));
+            long bucketSize = reseeded.getValuesForReinsertingWithInsertedValue(value).stream().filter(v -> v != -1).count();
+            assertTrue(bucketSize <= 4);
+        }
+        assertEquals(2000, reseeded.size());
+    }
+
+    @Test
+    public void testMinimalBuildUsesLessSpace() throws DuplicateValueException {
+        int[] values = new Random(5).ints(0, Integer.MAX_VALUE).distinct().limit(4000).toArray();
+        SecondaryHashFamily multiplyShift = SecondaryHashFamily.multiplyShift(7, 32);
+
+        CormackHashing normal = new CormackHashing.Builder().directorySize(500).secondaryHash(multiplyShift).build(values);
+        CormackHashing minimal = new CormackHashing.Builder().directorySize(500).secondaryHash(multiplyShift)
+                .minimal(1024).build(values);
+
+        assertTrue(minimal.getPrimaryFileSize() < normal.getPrimaryFileSize());
+        for (int value : values) {
+            assertTrue(minimal.contains(value));
+        }
+    }
+
+    @Test
+    public void testInsertWithMultiplyShiftInMinimalMode() throws DuplicateValueException {
+        CormackHashing minimal = new CormackHashing(7, PrimaryHashFamily.modulo(), SecondaryHashFamily.multiplyShift(1, 16));
+        minimal.setMinimalSearch(256);
+        int[] values = {14, 17, 10, 21, 28, 42, 35, 49, 56, 63};
+        for (int value : values) {
+            minimal.insert(value);
+        }
+
+        for (int value : values) {
+            assertTrue(minimal.contains(value));
+        }
+        // bucket 0 holds 8 values, the minimal mode does not let r grow with every insert
+        assertTrue(minimal.getIAndRFromNthDirectoryRecord(0)[1] < 16);
+    }
+
+    @Test
+    public void testPagedPrimaryFile(@TempDir Path directory) throws DuplicateValueException, IOException {
+        int[] values = new Random(13).ints(0, Integer.MAX_VALUE).distinct().limit(5000).toArray();
+        // pages of 16 slots and a pool of 4 pages, much smaller than the primary file
+        CormackHashing paged = new CormackHashing.Builder().directorySize(300)
+                .pagedPrimaryFile(directory.resolve("primary.pages"), 64, 4).build(new int[0]);
+        paged.setCompactionThreshold(0.3);
+        for (int value : values) {
+            paged.insert(value);
+        }
+
+        IoStatistics before = paged.getIoStatistics();
+        for (int value : values) {
+            assertTrue(paged.contains(value));
+        }
+        IoStatistics lookups = paged.getIoStatistics().since(before);
+        // the directory is in memory, every lookup reads one page at most
+        assertEquals(values.length, lookups.getPageReads() + lookups.getPageHits());
+        assertEquals(values.length, lookups.getPageMisses() + lookups.getPageHits());
+        assertTrue(lookups.getPageReads() > 0);
+        assertEquals(values.length, paged.size());
+        // appends fill new pages without reading them, they are misses but not reads
+        assertTrue(before.getPageMisses() > before.getPageReads());
+        paged.close();
+    }
+
+    @Test
+    public void testPagedBucketsDoNotCrossPages(@TempDir Path directory) throws IOException {
+        PagedPrimaryFile primaryFile = PagedPrimaryFile.create(directory.resolve("primary.pages"), 64, 2);
+        assertEquals(0, primaryFile.append(10));
+        // 10 more slots do not fit into the rest of the first page
+        assertEquals(16, primaryFile.append(10));
+        // a bucket larger than a page starts right after the previous one
+        assertEquals(26, primaryFile.append(40));
+        for (int position = 0; position < primaryFile.size(); position++) {
+            primaryFile.set(position, position);
+        }
+        for (int position = 0; position < primaryFile.size(); position++) {
+            assertEquals(position, primaryFile.get(position));
+        }
+        assertTrue(primaryFile.statistics().getPageWrites() > 0);
+        primaryFile.close();
+    }
+
+    @Test
+    public void testInsertAllReordersBucketOnce() throws DuplicateValueException {
+        int[] values = new Random(17).ints(0, Integer.MAX_VALUE).distinct().limit(2000).toArray();
+        CormackHashing oneByOne = new CormackHashing(100);
+        CormackHashing batch = new CormackHashing(100);
+        for (int k = 0; k < 1000; k++) {
+            oneByOne.insert(values[k]);
+        }
+        batch.insertAll(Arrays.copyOf(values, 1000));
+        int deadBefore = batch.getDeadSlots();
+        assertEquals(1000, batch.insertAll(Arrays.copyOfRange(values, 1000, 2000)));
+        for (int k = 1000; k < 2000; k++) {
+            oneByOne.insert(values[k]);
+        }
+
+        // every bucket moves once, so at most one old copy of each of the 100 buckets is left behind
+        assertTrue(batch.getDeadSlots() - deadBefore < oneByOne.getDeadSlots());
+        assertEquals(2000, batch.size());
+        for (int value : values) {
+            assertTrue(batch.contains(value));
+        }
+    }
+
+    @Test
+    public void testInsertAllDuplicates() throws DuplicateValueException {
+        cormackHashing.insertAll(new int[]{14, 17, 21});
+        String state = cormackHashing.getCurrentState();
+
+        assertThrows(DuplicateValueException.class, () -> cormackHashing.insertAll(new int[]{10, 28, 17}));
+        assertThrows(DuplicateValueException.class, () -> cormackHashing.insertAll(new int[]{10, 28, 10}));
+        assertEquals(state, cormackHashing.getCurrentState());
+        assertEquals(3, cormackHashing.size());
+
+        assertEquals(2, cormackHashing.insertAll(new int[]{10, 28, 17, 10}, DuplicatePolicy.SKIP));
+        assertEquals(5, cormackHashing.size());
+        assertTrue(cormackHashing.contains(10));
+        assertTrue(cormackHashing.contains(28));
+    }
+
+    @Test
+    public void testRemove() throws DuplicateValueException {
+        int[] values = {14, 17, 10, 21, 28, 42};
+        for (int value : values) {
+            cormackHashing.insert(value);
+        }
+
+        assertTrue(cormackHashing.remove(21));
+        assertFalse(cormackHashing.remove(21));
+        assertFalse(cormackHashing.remove(35));
+        assertFalse(cormackHashing.contains(21));
+        assertEquals(5, cormackHashing.size());
+
+        // bucket 0 had 14, 21, 28 and 42 in r = 4 slots, it is reordered when one value is left
+        assertTrue(cormackHashing.remove(28));
+        assertTrue(cormackHashing.remove(42));
+        assertArrayEquals(new int[]{0, 1}, cormackHashing.getIAndRFromNthDirectoryRecord(0));
+        assertTrue(cormackHashing.contains(14));
+
+        // the bucket of 17 and 10 is stored at the beginning of the primary file
+        assertTrue(cormackHashing.remove(17));
+        assertTrue(cormackHashing.remove(10));
+        assertTrue(cormackHashing.directoryIsFreeForValue(10));
+        cormackHashing.insert(10);
+        assertTrue(cormackHashing.contains(10));
+        assertTrue(cormackHashing.contains(14));
+        assertEquals(2, cormackHashing.size());
+    }
+
+    @Test
+    public void testRemoveUnderChurnKeepsPrimaryFileBounded() throws DuplicateValueException {
+        CormackHashing churned = new CormackHashing(200);
+        churned.setCompactionThreshold(0.5);
+        Random random = new Random(19);
+        int[] stored = random.ints(0, Integer.MAX_VALUE).distinct().limit(1000).toArray();
+        churned.insertAll(stored);
+
+        int largest = 0;
+        for (int round = 0; round < 20000; round++) {
+            int k = random.nextInt(stored.length);
+            assertTrue(churned.remove(stored[k]));
+            int value;
+            do {
+                value = random.nextInt(Integer.MAX_VALUE);
+            } while (churned.contains(value));
+            churned.insert(value);
+            stored[k] = value;
+            largest = Math.max(largest, churned.getPrimaryFileSize());
+        }
+
+        assertEquals(stored.length, churned.size());
+        for (int value : stored) {
+            assertTrue(churned.contains(value));
+        }
+        assertTrue(largest < 10 * stored.length);
+    }
+
+    @Test
+    public void testFreeze() throws DuplicateValueException {
+        int[] values = new Random(29).ints(0, Integer.MAX_VALUE).distinct().limit(3000).toArray();
+        CormackHashing table = new CormackHashing(300);
+        for (int value : values) {
+            table.insert(value);
+        }
+        table.remove(values[0]);
+
+        FrozenCormackHashing frozen = table.freeze();
+        assertEquals(table.size(), frozen.size());
+        assertEquals(table.getPrimaryFileSize() - table.getDeadSlots(), frozen.getPrimaryFileSize());
+        assertFalse(frozen.contains(values[0]));
+        for (int k = 1; k < values.length; k++) {
+            assertTrue(frozen.contains(values[k]));
+        }
+        assertFalse(frozen.contains(-1));
+        for (int value : new Random(31).ints(1000).toArray()) {
+            assertEquals(table.contains(value), frozen.contains(value));
+        }
+
+        // the frozen copy does not change with the table
+        table.insert(values[0]);
+        assertFalse(frozen.contains(values[0]));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        int[] values = {14, 17, 10, 21, 28, 42};
+        for (int value : values) {
+            cormackHashing.insert(value);
+        }
+
+        assertThrows(DuplicateValueException.class, () -> cormackHashing.insert(14));
+        assertThrows(IllegalArgumentException.class, () -> cormackHashing.insert(-1));
+
+        CormackHashingMetrics metrics = cormackHashing.getMetrics();
+        assertEquals(values.length, metrics.getInserts());
+        // the latency of the first insert out of every 16 is measured
+        assertEquals(1, metrics.getInsertLatency().count());
+        // 21, 28 and 42 reorder bucket 0, 10 reorders bucket 3
+        assertEquals(4, metrics.getReorders());
+        assertTrue(metrics.getTestedFunctions() >= metrics.getReorders());
+        assertEquals(values.length, metrics.getLiveSlots());
+        assertEquals(cormackHashing.getPrimaryFileSize(),
+                metrics.getLiveSlots() + metrics.getDeadSlots() + metrics.getEmptySlotsInBuckets());
+        assertEquals(2, metrics.getBucketSizes().count());
+
+        cormackHashing.setMetricsEnabled(false);
+        cormackHashing.insert(50);
+        cormackHashing.insertAll(new int[]{51, 52}, DuplicatePolicy.ABORT);
+        assertEquals(values.length, cormackHashing.getMetrics().getInserts());
+        cormackHashing.setMetricsEnabled(true);
+
+        ObjectName name = cormackHashing.registerMBean("cormack:type=CormackHashing,name=test");
+        try {
+            assertEquals((long) values.length, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Inserts"));
+            assertEquals(cormackHashing.getMetrics().getEmptySlotsInBuckets(),
+                    ManagementFactory.getPlatformMBeanServer().getAttribute(name, "EmptySlotsInBuckets"));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+
+    @Test
+    public void testMetricsCountBuilds() throws DuplicateValueException {
+        int[] values = new Random(12).ints(0, Integer.MAX_VALUE).distinct().limit(20000).toArray();
+        CormackHashingMetrics sequential = new CormackHashing.Builder().directorySize(2000).build(values).getMetrics();
+        CormackHashingMetrics parallel = new CormackHashing.Builder().directorySize(2000).parallelism(4).build(values).getMetrics();
+
+        // the search of every bucket is counted, also on the threads of a parallel build
+        assertTrue(sequential.getRIncrements() > 0);
+        assertEquals(sequential.getTestedFunctions(), parallel.getTestedFunctions());
+        assertEquals(sequential.getRIncrements(), parallel.getRIncrements());
+    }
+
+    @Test
+    public void testInsertionListener() throws DuplicateValueException {
+        CormackHashing cormackHashing = new CormackHashing(7);
+        InsertionTrace trace = new InsertionTrace();
+        cormackHashing.setInsertionListener(trace);
+
+        cormackHashing.insert(14);
+        assertEquals(0, trace.position);
+        assertEquals(7, trace.directorySize);
+        assertTrue(trace.positionWasFree());
+        assertEquals(0, trace.candidates);
+        assertEquals(1, trace.placed);
+        assertEquals(cormackHashing.get(14), trace.placedKeys[0]);
+
+        cormackHashing.insert(21);
+        assertFalse(trace.positionWasFree());
+        assertEquals(0, trace.oldP);
+        assertEquals(1, trace.oldR);
+        assertEquals(1, trace.takenValues);
+        // the search ends with the (i, r) stored in the directory
+        assertTrue(trace.candidates > 0);
+        assertEquals(trace.i, trace.candidateI[trace.candidates - 1]);
+        assertEquals(trace.r, trace.candidateR[trace.candidates - 1]);
+        assertArrayEquals(new int[]{trace.i, trace.r}, cormackHashing.getIAndRFromNthDirectoryRecord(0));
+        assertEquals(2, trace.placed);
+        for (int k = 0; k < trace.placed; k++) {
+            assertEquals(cormackHashing.get(trace.placedValues[k]), trace.placedKeys[k]);
+        }
+
+        cormackHashing.setInsertionListener(null);
+        cormackHashing.insert(28);
+        assertEquals(21, trace.value);
+    }
+
+    @Test
+    public void testSearchLimitsSplitBucket(@TempDir Path directory) throws DuplicateValueException, IOException {
+        // all values in one bucket, without limits r would grow far beyond the number of values
+        CormackHashing cormackHashing = new CormackHashing(1);
+        cormackHashing.setSearchLimits(64, 2);
+        int[] values = new Random(7).ints(0, Integer.MAX_VALUE).distinct().limit(1000).toArray();
+        for (int value : values) {
+            cormackHashing.insert(value);
+        }
+
+        assertTrue(cormackHashing.getMetrics().getBucketSplits() > 0);
+        assertTrue(cormackHashing.getIAndRFromNthDirectoryRecord(0)[0] < 0);
+        assertTrue(cormackHashing.getPrimaryFileSize() - cormackHashing.getDeadSlots() <= 3 * values.length);
+        for (int value : values) {
+            assertTrue(cormackHashing.contains(value));
+        }
+        assertFalse(cormackHashing.contains(-5));
+
+        for (int k = 0; k < values.length; k += 2) {
+            assertTrue(cormackHashing.remove(values[k]));
+        }
+        cormackHashing.compact();
+        assertEquals(0, cormackHashing.getDeadSlots());
+        for (int k = 0; k < values.length; k++) {
+            assertEquals(k % 2 == 1, cormackHashing.contains(values[k]));
+        }
+
+        FrozenCormackHashing frozen = cormackHashing.freeze();
+        Path file = directory.resolve("split.cormack");
+        cormackHashing.save(file);
+        CormackHashing loaded = CormackHashing.load(file);
+        MappedCormackHashing mapped = MappedCormackHashing.open(file);
+        for (int k = 0; k < values.length; k++) {
+            assertEquals(k % 2 == 1, frozen.contains(values[k]));
+            assertEquals(k % 2 == 1, loaded.contains(values[k]));
+            assertEquals(k % 2 == 1, mapped.contains(values[k]));
+        }
+        assertEquals(values.length / 2, loaded.size());
+    }
+
+    @Test
+    public void testKeys() throws DuplicateValueException {
+        CormackHashing cormackHashing = new CormackHashing(64);
+        cormackHashing.setDirectoryGrowth(2, 1);
+        int[] values = new Random(11).ints().filter(v -> v != -1).distinct().limit(20000).toArray();
+        for (int value : values) {
+            cormackHashing.insert(value);
+        }
+        for (int k = 0; k < values.length; k += 3) {
+            cormackHashing.remove(values[k]);
+        }
+
+        int[] expected = new int[values.length - (values.length + 2) / 3];
+        int count = 0;
+        for (int k = 0; k < values.length; k++) {
+            if (k % 3 != 0) {
+                expected[count++] = values[k];
+            }
+        }
+        Arrays.sort(expected);
+
+        assertEquals(expected.length, cormackHashing.keys().count());
+        assertArrayEquals(expected, cormackHashing.keys().sorted().toArray());
+        assertArrayEquals(expected, cormackHashing.keys().parallel().sorted().toArray());
+        // the order of the values is kept by parallel streams as well
+        assertArrayEquals(cormackHashing.keys().toArray(), cormackHashing.keys().parallel().toArray());
+        assertEquals(Arrays.stream(expected).asLongStream().sum(), cormackHashing.keys().parallel().asLongStream().sum());
+        assertEquals(0, new CormackHashing(7).keys().count());
+    }
+}
@@ -0,0 +1,73 @@
+package cormack;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CormackLongMapTest {
+
+    @Test
+    public void testFixedLengthValues() {
+        CormackLongMap map = CormackLongMap.fixedLength(500, Long.BYTES);
+        long[] keys = new Random(23).longs().distinct().limit(5000).toArray();
+        for (long key : keys) {
+            assertTrue(map.put(key, ByteBuffer.allocate(Long.BYTES).putLong(~key).array()));
+        }
+        // -1 is an ordinary key
+        assertTrue(map.put(-1L, new byte[Long.BYTES]));
+        assertFalse(map.put(keys[0], ByteBuffer.allocate(Long.BYTES).putLong(7).array()));
+
+        assertEquals(keys.length + 1, map.size());
+        assertTrue(map.containsKey(-1L));
+        assertEquals(7, ByteBuffer.wrap(map.get(keys[0])).getLong());
+        ByteBuffer target = ByteBuffer.allocate(Long.BYTES);
+        for (int k = 1; k < keys.length; k++) {
+            target.clear();
+            assertEquals(Long.BYTES, map.get(keys[k], target));
+            assertEquals(~keys[k], target.getLong(0));
+        }
+        assertNull(map.get(0L));
+        assertEquals(-1, map.get(0L, target));
+    }
+
+    @Test
+    public void testVariableLengthValuesAndRemove() {
+        CormackLongMap map = CormackLongMap.variableLength(64);
+        for (long key = 0; key < 1000; key++) {
+            map.put(key * 1_000_000_007L, ("value " + key).getBytes(StandardCharsets.UTF_8));
+        }
+        map.put(5 * 1_000_000_007L, new byte[0]);
+
+        assertTrue(map.remove(7 * 1_000_000_007L));
+        assertFalse(map.remove(7 * 1_000_000_007L));
+        assertFalse(map.containsKey(7 * 1_000_000_007L));
+        assertEquals(999, map.size());
+        assertEquals(0, map.get(5 * 1_000_000_007L).length);
+        assertEquals("value 999", new String(map.get(999 * 1_000_000_007L), StandardCharsets.UTF_8));
+        assertTrue(map.offHeapBytes() > 0);
+    }
+
+    @Test
+    public void testReplacedValuesAndMovedBucketsAreReclaimed() {
+        CormackLongMap map = CormackLongMap.variableLength(16);
+        byte[] value = new byte[100];
+        for (int round = 0; round < 50; round++) {
+            for (long key = 0; key < 1000; key++) {
+                value[0] = (byte) round;
+                map.put(key * 1_000_000_007L, value);
+            }
+        }
+
+        // 50 rounds of 100 kB would keep 5 MB of the value log without compaction
+        assertEquals(1000, map.size());
+        assertTrue(map.getDirectorySize() >= 1000 / 2);
+        assertTrue(map.offHeapBytes() <= 4 << 20);
+        for (long key = 0; key < 1000; key++) {
+            assertEquals(49, map.get(key * 1_000_000_007L)[0]);
+        }
+    }
+}
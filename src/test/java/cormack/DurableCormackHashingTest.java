@@ -0,0 +1,184 @@
+package cormack;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DurableCormackHashingTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRecoveryReplaysLog() throws IOException, DuplicateValueException {
+        DurableCormackHashing durable = DurableCormackHashing.open(directory, 7);
+        durable.insert(14);
+        durable.insert(17);
+        assertEquals(2, durable.insertAll(new int[]{10, 21, 17}, DuplicatePolicy.SKIP));
+        assertTrue(durable.remove(17));
+        assertThrows(DuplicateValueException.class, () -> durable.insert(14));
+        durable.close();
+
+        // a record cut off by a crash is dropped
+        Files.write(directory.resolve("wal-0.log"), new byte[]{1, 5, 0}, StandardOpenOption.APPEND);
+
+        DurableCormackHashing recovered = DurableCormackHashing.open(directory, 7);
+        assertEquals(3, recovered.size());
+        assertTrue(recovered.contains(14));
+        assertTrue(recovered.contains(10));
+        assertTrue(recovered.contains(21));
+        assertFalse(recovered.contains(17));
+        recovered.insert(17);
+        recovered.close();
+
+        DurableCormackHashing reopened = DurableCormackHashing.open(directory, 7);
+        assertEquals(4, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    public void testOpenWithConfiguredTable() throws IOException, DuplicateValueException {
+        Supplier<CormackHashing> newTable = () -> new CormackHashing(50, PrimaryHashFamily.mixing(3),
+                SecondaryHashFamily.multiplyShift(5, 16));
+        DurableCormackHashing durable = DurableCormackHashing.open(directory, newTable);
+        for (int value = 0; value < 500; value++) {
+            durable.insert(value * 31);
+        }
+        durable.close();
+
+        // the log is replayed into a new table of the factory
+        DurableCormackHashing recovered = DurableCormackHashing.open(directory, newTable);
+        assertEquals(500, recovered.size());
+        assertTrue(recovered.contains(31 * 499));
+        recovered.checkpoint();
+        recovered.close();
+
+        // the snapshot keeps the hash functions, the factory is not used
+        DurableCormackHashing loaded = DurableCormackHashing.open(directory, 7);
+        assertEquals(500, loaded.size());
+        assertTrue(loaded.contains(31 * 499));
+        loaded.close();
+
+        // values of a new table are not in the log
+        CormackHashing filled = new CormackHashing(7);
+        filled.insert(1);
+        assertThrows(IllegalArgumentException.class, () -> DurableCormackHashing.open(directory.resolve("other"), () -> filled));
+    }
+
+    @Test
+    public void testDamagedRecordFailsRecovery() throws IOException, DuplicateValueException {
+        DurableCormackHashing durable = DurableCormackHashing.open(directory, 7);
+        durable.insert(14);
+        durable.insert(17);
+        durable.close();
+
+        // a damaged record followed by another one is not a cut off end, the records after it must not be dropped
+        Path log = directory.resolve("wal-0.log");
+        byte[] bytes = Files.readAllBytes(log);
+        bytes[5] ^= 1;
+        Files.write(log, bytes);
+        assertThrows(IOException.class, () -> DurableCormackHashing.open(directory, 7));
+        assertEquals(bytes.length, Files.size(log));
+    }
+
+    @Test
+    public void testDamagedEndOfLogIsDropped() throws IOException, DuplicateValueException {
+        DurableCormackHashing durable = DurableCormackHashing.open(directory, 7);
+        durable.insert(14);
+        durable.insert(17);
+        durable.close();
+
+        // a crash can leave the last record damaged and garbage after it, nothing valid follows the damage
+        Path log = directory.resolve("wal-0.log");
+        byte[] bytes = Files.readAllBytes(log);
+        int recordBytes = bytes.length / 2;
+        bytes[recordBytes + 5] ^= 1;
+        Files.write(log, bytes);
+        Files.write(log, new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        DurableCormackHashing recovered = DurableCormackHashing.open(directory, 7);
+        assertEquals(1, recovered.size());
+        assertTrue(recovered.contains(14));
+        assertEquals(recordBytes, Files.size(log));
+        recovered.close();
+    }
+
+    @Test
+    public void testCheckpointTruncatesLog() throws IOException, DuplicateValueException {
+        DurableCormackHashing durable = DurableCormackHashing.open(directory, 100);
+        durable.setCheckpointLogBytes(1000);
+        for (int value = 0; value < 1000; value++) {
+            durable.insert(value);
+        }
+        durable.close();
+
+        long logs = Files.list(directory).filter(file -> file.getFileName().toString().startsWith("wal-")).count();
+        assertEquals(1, logs);
+        long snapshots = Files.list(directory).filter(file -> file.getFileName().toString().startsWith("snapshot-")).count();
+        assertEquals(1, snapshots);
+
+        DurableCormackHashing recovered = DurableCormackHashing.open(directory, 100);
+        assertEquals(1000, recovered.size());
+        for (int value = 0; value < 1000; value++) {
+            assertTrue(recovered.contains(value));
+        }
+        recovered.close();
+    }
+
+    @Test
+    public void testGroupCommit() throws IOException, DuplicateValueException {
+        DurableCormackHashing durable = DurableCormackHashing.open(directory, 7);
+        durable.setGroupCommit(4, 0);
+        for (int value = 0; value < 6; value++) {
+            durable.insert(value);
+        }
+
+        // without close the last two inserts are not forced to the log yet, as after a crash
+        assertEquals(4, recoveredCopySize(directory.resolve("crash-1")));
+        durable.sync();
+        assertEquals(6, recoveredCopySize(directory.resolve("crash-2")));
+        durable.close();
+    }
+
+    @Test
+    public void testGroupIsForcedAfterDelay() throws IOException, DuplicateValueException, InterruptedException {
+        DurableCormackHashing durable = DurableCormackHashing.open(directory, 7);
+        durable.setGroupCommit(100, 20);
+        for (int value = 0; value < 3; value++) {
+            durable.insert(value);
+        }
+
+        // no change follows the group, the background thread forces it
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        long logSize = 0;
+        while (logSize == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            logSize = Files.size(directory.resolve("wal-0.log"));
+        }
+        assertEquals(3, recoveredCopySize(directory.resolve("crash")));
+        durable.close();
+    }
+
+    /**
+     * Recovers a copy of the files in their current state, as after a crash, and closes it again.
+     */
+    private int recoveredCopySize(Path copy) throws IOException {
+        Files.createDirectories(copy);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.*")) {
+            for (Path file : files) {
+                Files.copy(file, copy.resolve(file.getFileName()));
+            }
+        }
+        try (DurableCormackHashing recovered = DurableCormackHashing.open(copy, 7)) {
+            return recovered.size();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package cormack;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoaderTest {
+
+    private static Loader load(CormackHashing cormackHashing, String input, int batchSize, int bufferBytes) throws IOException {
+        Loader loader = new Loader(cormackHashing, batchSize, 0, new PrintStream(new ByteArrayOutputStream()), bufferBytes);
+        loader.load(Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.US_ASCII))));
+        return loader;
+    }
+
+    @Test
+    public void testLoadCountsDuplicatesAndInvalidKeys() throws IOException {
+        CormackHashing cormackHashing = new CormackHashing(7);
+        // tokens are split between reads of the 4 byte buffer
+        Loader loader = load(cormackHashing, "14\n1234567\r\n14, 21,-5 -1\n99999999999\n-\n21\n42", 2, 4);
+
+        assertEquals(10, loader.getKeys());
+        assertEquals(5, loader.getInserted());
+        assertEquals(2, loader.getDuplicates());
+        assertEquals(3, loader.getInvalid());
+        assertEquals(5, cormackHashing.size());
+        for (int value : new int[]{14, 21, 42, -5, 1234567}) {
+            assertTrue(cormackHashing.contains(value));
+        }
+    }
+
+    @Test
+    public void testTokensWhichAreNotNumbersAreInvalid() throws IOException {
+        CormackHashing cormackHashing = new CormackHashing(7);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Loader loader = new Loader(cormackHashing, 16, 0, new PrintStream(out), 4);
+        loader.load(Channels.newChannel(new ByteArrayInputStream("12-34\n7x, 8\n--5 abc\t9".getBytes(StandardCharsets.US_ASCII))));
+
+        // only whitespace and commas separate keys, 12-34 is not 12 and -34
+        assertEquals(6, loader.getKeys());
+        assertEquals(2, loader.getInserted());
+        assertEquals(4, loader.getInvalid());
+        assertFalse(cormackHashing.contains(12));
+        assertFalse(cormackHashing.contains(-34));
+        assertTrue(cormackHashing.contains(8));
+        assertTrue(cormackHashing.contains(9));
+        String report = new String(out.toByteArray(), StandardCharsets.US_ASCII);
+        assertTrue(report.contains("Invalid key \"12-34\" on line 1"));
+        assertTrue(report.contains("Invalid key \"abc\" on line 3"));
+    }
+
+    @Test
+    public void testLoadManyKeys() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int value = 0; value < 100000; value++) {
+            input.append(value * 7).append('\n');
+        }
+        CormackHashing cormackHashing = new CormackHashing(1000);
+        cormackHashing.setDirectoryGrowth(2, 8);
+        Loader loader = load(cormackHashing, input.toString(), 4096, 1 << 12);
+
+        assertEquals(100000, loader.getInserted());
+        assertEquals(100000, cormackHashing.size());
+        assertTrue(cormackHashing.contains(7 * 99999));
+    }
+}
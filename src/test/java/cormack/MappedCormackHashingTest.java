@@ -0,0 +1,89 @@
+package cormack;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedCormackHashingTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testSaveAndOpen() throws IOException, DuplicateValueException {
+        int[] values = new Random(11).ints(0, Integer.MAX_VALUE).distinct().limit(3000).toArray();
+        CormackHashing cormackHashing = new CormackHashing(100);
+        for (int value : values) {
+            cormackHashing.insert(value);
+        }
+
+        Path file = directory.resolve("table.cormack");
+        cormackHashing.save(file);
+        MappedCormackHashing mapped = MappedCormackHashing.open(file);
+
+        assertEquals(values.length, mapped.size());
+        assertEquals(100, mapped.getDirectorySize());
+        for (int value : values) {
+            assertTrue(mapped.contains(value));
+            assertEquals(cormackHashing.contains(value + 1), mapped.contains(value + 1));
+        }
+        assertFalse(mapped.contains(-1));
+    }
+
+    @Test
+    public void testSaveWithSeededHashFunctions() throws IOException, DuplicateValueException {
+        int[] values = new Random(12).ints(-1000000, 1000000).filter(v -> v != -1).distinct().limit(2000).toArray();
+        CormackHashing cormackHashing = new CormackHashing.Builder()
+                .primaryHash(PrimaryHashFamily.mixing(3))
+                .secondaryHash(SecondaryHashFamily.multiplyShift(5, 16))
+                .build(values);
+
+        Path file = directory.resolve("seeded.cormack");
+        cormackHashing.save(file);
+        MappedCormackHashing mapped = MappedCormackHashing.open(file);
+
+        for (int value : values) {
+            assertEquals(cormackHashing.contains(value + 1), mapped.contains(value + 1));
+            assertTrue(mapped.contains(value));
+        }
+    }
+
+    @Test
+    public void testOpenRejectsOtherFiles() throws IOException {
+        Path file = directory.resolve("other.txt");
+        Files.write(file, new byte[100]);
+        assertThrows(IOException.class, () -> MappedCormackHashing.open(file));
+    }
+
+    @Test
+    public void testLoadAndOpenRejectCorruptDirectoryRecords() throws IOException, DuplicateValueException {
+        CormackHashing cormackHashing = new CormackHashing(10);
+        for (int value = 0; value < 200; value++) {
+            cormackHashing.insert(value * 7919);
+        }
+        int position = cormackHashing.primaryHashFunction(0);
+
+        // negative p, negative r and a split index past the second-level directories
+        int[][] corruptions = {{2, -5}, {1, -3}, {0, -1000}};
+        for (int[] corruption : corruptions) {
+            Path file = directory.resolve("corrupt" + corruption[0] + ".cormack");
+            cormackHashing.save(file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ByteBuffer field = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(0, corruption[1]);
+                channel.write(field, TableFormat.directoryOffset(position) + (long) Integer.BYTES * corruption[0]);
+            }
+            assertThrows(IOException.class, () -> CormackHashing.load(file));
+            assertThrows(IOException.class, () -> MappedCormackHashing.open(file));
+        }
+    }
+}